@@ -1,14 +1,20 @@
 package habsida.spring.boot_security.demo;  // Adjust the package if needed
 
+import habsida.spring.boot_security.demo.configs.StartupTimeline;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 
 public class SpringBootSecurityDemoApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(SpringBootSecurityDemoApplication.class, args);
+		SpringApplication application = new SpringApplication(SpringBootSecurityDemoApplication.class);
+		// Startup steps are buffered for the actuator startup endpoint
+		application.setApplicationStartup(new BufferingApplicationStartup(4096));
+		application.addListeners(new StartupTimeline());
+		application.run(args);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package habsida.spring.boot_security.demo.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+@Getter
+@AllArgsConstructor
+public class AuditEntry {
+
+    // Longer values are cut so a single record always fits in a segment
+    static final int MAX_FIELD_BYTES = 2048;
+
+    private final long timestamp;
+    private final String actor;
+    private final String action;
+    private final String target;
+    private final String details;
+
+    byte[] encode() {
+        byte[] actorBytes = truncate(actor);
+        byte[] actionBytes = truncate(action);
+        byte[] targetBytes = truncate(target);
+        byte[] detailsBytes = truncate(details);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 4 * Short.BYTES
+                + actorBytes.length + actionBytes.length + targetBytes.length + detailsBytes.length);
+        buffer.putLong(timestamp);
+        putField(buffer, actorBytes);
+        putField(buffer, actionBytes);
+        putField(buffer, targetBytes);
+        putField(buffer, detailsBytes);
+        return buffer.array();
+    }
+
+    static AuditEntry decode(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        return new AuditEntry(timestamp, getField(buffer), getField(buffer), getField(buffer), getField(buffer));
+    }
+
+    private static byte[] truncate(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_FIELD_BYTES) {
+            return bytes;
+        }
+        // Back off to a character boundary so the cut never splits a multi-byte sequence
+        int length = MAX_FIELD_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getField(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEntry{" +
+                "timestamp=" + timestamp +
+                ", actor='" + actor + '\'' +
+                ", action='" + action + '\'' +
+                ", target='" + target + '\'' +
+                ", details='" + details + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,176 @@
+package habsida.spring.boot_security.demo.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only audit log split into fixed-size memory-mapped segment files.
+ * Each record is a length prefix followed by the encoded entry; a zero length
+ * marks the end of the written part of a segment.
+ */
+public class AuditLog implements Closeable {
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final long rotateIntervalMillis;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private long segmentOpenedAt;
+    private boolean dirty;
+
+    public AuditLog(Path directory, int segmentBytes, int maxSegments, long rotateIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segmentNumbers();
+            if (existing.isEmpty()) {
+                openSegment(1);
+            } else {
+                reopenSegment(existing.get(existing.size() - 1));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit log in " + directory, e);
+        }
+    }
+
+    public synchronized void append(List<AuditEntry> entries) throws IOException {
+        if (rotateIntervalMillis > 0 && segment.position() > 0
+                && System.currentTimeMillis() - segmentOpenedAt >= rotateIntervalMillis) {
+            rotate();
+        }
+        for (AuditEntry entry : entries) {
+            byte[] payload = entry.encode();
+            // Keep room for the record header and the trailing end marker
+            if (segment.remaining() < payload.length + 2 * Integer.BYTES) {
+                rotate();
+            }
+            int start = segment.position();
+            segment.position(start + Integer.BYTES);
+            segment.put(payload);
+            segment.putInt(start, payload.length);
+            dirty = true;
+        }
+    }
+
+    public synchronized void force() {
+        if (dirty) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    // Newest entries first, scanning segments from the most recent backwards
+    public synchronized List<AuditEntry> readRecent(int limit) throws IOException {
+        force();
+        List<AuditEntry> result = new ArrayList<>();
+        List<Long> numbers = segmentNumbers();
+        for (int i = numbers.size() - 1; i >= 0 && result.size() < limit; i--) {
+            List<AuditEntry> entries = readSegment(segmentPath(numbers.get(i)));
+            for (int j = entries.size() - 1; j >= 0 && result.size() < limit; j--) {
+                result.add(entries.get(j));
+            }
+        }
+        return result;
+    }
+
+    public synchronized int segmentCount() throws IOException {
+        return segmentNumbers().size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void rotate() throws IOException {
+        segment.force();
+        dirty = false;
+        channel.close();
+        openSegment(segmentNumber + 1);
+
+        List<Long> numbers = segmentNumbers();
+        for (int i = 0; i < numbers.size() - maxSegments; i++) {
+            Files.deleteIfExists(segmentPath(numbers.get(i)));
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentNumber = number;
+        segmentOpenedAt = System.currentTimeMillis();
+    }
+
+    private void reopenSegment(long number) throws IOException {
+        if (Files.size(segmentPath(number)) != segmentBytes) {
+            // Segment size changed since the last run, start a fresh segment
+            openSegment(number + 1);
+            return;
+        }
+        openSegment(number);
+        int position = 0;
+        while (position + Integer.BYTES <= segmentBytes) {
+            int length = segment.getInt(position);
+            if (length <= 0) {
+                break;
+            }
+            position += Integer.BYTES + length;
+        }
+        segment.position(position);
+    }
+
+    private List<AuditEntry> readSegment(Path path) throws IOException {
+        List<AuditEntry> entries = new ArrayList<>();
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                entries.add(AuditEntry.decode(record));
+                buffer.position(buffer.position() + length);
+            }
+        }
+        return entries;
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(PREFIX.length(), name.length() - SUFFIX.length()))));
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX));
+    }
+}
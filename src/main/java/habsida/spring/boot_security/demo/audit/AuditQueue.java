@@ -0,0 +1,81 @@
+package habsida.spring.boot_security.demo.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer: many request threads offer, the audit writer
+ * thread is the only consumer. Each slot carries a sequence number that tells
+ * producers and the consumer whose turn it is, so no locks are taken.
+ */
+public class AuditQueue {
+
+    private final int mask;
+    private final AtomicReferenceArray<AuditEntry> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerCursor = new AtomicLong();
+    private final AtomicLong consumerCursor = new AtomicLong();
+
+    public AuditQueue(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Audit queue capacity must be at least 2");
+        }
+        int capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // Returns false instead of blocking when the queue is full
+    public boolean offer(AuditEntry entry) {
+        long position = producerCursor.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long distance = sequences.get(index) - position;
+            if (distance == 0) {
+                if (producerCursor.compareAndSet(position, position + 1)) {
+                    slots.set(index, entry);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = producerCursor.get();
+            } else if (distance < 0) {
+                return false;
+            } else {
+                position = producerCursor.get();
+            }
+        }
+    }
+
+    // Single consumer only
+    public int drainTo(List<AuditEntry> target, int maxEntries) {
+        long position = consumerCursor.get();
+        int drained = 0;
+        while (drained < maxEntries) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            target.add(slots.get(index));
+            slots.set(index, null);
+            sequences.set(index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        consumerCursor.set(position);
+        return drained;
+    }
+
+    public int size() {
+        return (int) Math.max(0, producerCursor.get() - consumerCursor.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
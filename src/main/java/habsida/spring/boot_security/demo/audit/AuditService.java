@@ -0,0 +1,142 @@
+package habsida.spring.boot_security.demo.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Service
+public class AuditService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditService.class);
+
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+
+    private final AuditQueue queue;
+    private final AuditLog auditLog;
+    private final int batchSize;
+    private final long fsyncIntervalMillis;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final Counter enqueued;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter batches;
+    private final Counter writeErrors;
+
+    public AuditService(MeterRegistry meterRegistry,
+                        @Value("${app.audit.directory:data/audit}") String directory,
+                        @Value("${app.audit.queue-capacity:8192}") int queueCapacity,
+                        @Value("${app.audit.batch-size:256}") int batchSize,
+                        @Value("${app.audit.segment-bytes:8388608}") int segmentBytes,
+                        @Value("${app.audit.max-segments:16}") int maxSegments,
+                        @Value("${app.audit.rotate-interval-ms:3600000}") long rotateIntervalMillis,
+                        @Value("${app.audit.fsync-interval-ms:1000}") long fsyncIntervalMillis) {
+        this.queue = new AuditQueue(queueCapacity);
+        this.auditLog = new AuditLog(Path.of(directory), Math.max(segmentBytes, MIN_SEGMENT_BYTES),
+                Math.max(maxSegments, 1), rotateIntervalMillis);
+        this.batchSize = batchSize;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+
+        this.enqueued = meterRegistry.counter("audit.entries.enqueued");
+        this.dropped = meterRegistry.counter("audit.entries.dropped");
+        this.written = meterRegistry.counter("audit.entries.written");
+        this.batches = meterRegistry.counter("audit.batches.written");
+        this.writeErrors = meterRegistry.counter("audit.write.errors");
+        Gauge.builder("audit.queue.depth", queue, AuditQueue::size).register(meterRegistry);
+        Gauge.builder("audit.queue.capacity", queue, AuditQueue::capacity).register(meterRegistry);
+
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Never blocks the calling request; a full queue drops the entry and counts it
+    public void record(String action, String target, String details) {
+        AuditEntry entry = new AuditEntry(System.currentTimeMillis(), currentActor(), action, target, details);
+        if (queue.offer(entry)) {
+            enqueued.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    public List<AuditEntry> recent(int limit) throws IOException {
+        return auditLog.readRecent(limit);
+    }
+
+    public Map<String, Object> stats() throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queue.capacity());
+        stats.put("enqueued", (long) enqueued.count());
+        stats.put("dropped", (long) dropped.count());
+        stats.put("written", (long) written.count());
+        stats.put("batches", (long) batches.count());
+        stats.put("writeErrors", (long) writeErrors.count());
+        stats.put("segments", auditLog.segmentCount());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        auditLog.close();
+    }
+
+    private void writeLoop() {
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        long lastSync = System.currentTimeMillis();
+        while (running || queue.size() > 0) {
+            batch.clear();
+            queue.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                try {
+                    auditLog.append(batch);
+                    written.increment(batch.size());
+                    batches.increment();
+                } catch (IOException | RuntimeException e) {
+                    writeErrors.increment();
+                    log.error("Failed to write {} audit entries", batch.size(), e);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastSync >= fsyncIntervalMillis) {
+                try {
+                    auditLog.force();
+                } catch (RuntimeException e) {
+                    writeErrors.increment();
+                    log.error("Failed to sync audit log", e);
+                }
+                lastSync = now;
+            }
+            if (batch.size() < batchSize && running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        }
+    }
+
+    private String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "system";
+    }
+}
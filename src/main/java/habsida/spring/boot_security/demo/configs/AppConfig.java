@@ -1,15 +1,25 @@
 package habsida.spring.boot_security.demo.configs;
 
+import habsida.spring.boot_security.demo.audit.AuditService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
+
+    // Kept eager under spring.main.lazy-initialization: they run work from startup
+    @Bean
+    static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AuditService.class, LoginThrottle.class, IdBlockAligner.class);
+    }
 }
\ No newline at end of file
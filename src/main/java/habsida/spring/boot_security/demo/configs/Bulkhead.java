@@ -0,0 +1,128 @@
+package habsida.spring.boot_security.demo.configs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit for one group of endpoints, with a bounded wait queue.
+ * The limit adapts to observed latency (gradient style): while requests take
+ * about as long as the best recently seen, it grows by roughly its square
+ * root; as latency climbs above that baseline it shrinks in proportion, so a
+ * slow database is met with fewer concurrent requests instead of a pile-up on
+ * the connection pool.
+ */
+class Bulkhead {
+
+    enum Admission { ADMITTED, QUEUE_FULL, TIMED_OUT }
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    // Baseline is re-learned periodically so it follows a permanent shift in latency
+    private static final int BASELINE_RESET_SAMPLES = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private long baselineNanos = Long.MAX_VALUE;
+    private double smoothedNanos;
+    private int samples;
+
+    Bulkhead(int initialLimit, int minLimit, int maxLimit, int maxQueue) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    Admission acquire(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return Admission.ADMITTED;
+            }
+            if (queued >= maxQueue) {
+                return Admission.QUEUE_FULL;
+            }
+            queued++;
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return Admission.TIMED_OUT;
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+                return Admission.ADMITTED;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            adjustLimit(latencyNanos);
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustLimit(long latencyNanos) {
+        if (++samples >= BASELINE_RESET_SAMPLES) {
+            samples = 0;
+            baselineNanos = (long) smoothedNanos;
+        }
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        smoothedNanos = smoothedNanos == 0 ? latencyNanos : smoothedNanos * (1 - SMOOTHING) + latencyNanos * SMOOTHING;
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, baselineNanos / Math.max(1.0, smoothedNanos)));
+        double target = limit * gradient + Math.sqrt(limit);
+        // Only grow while the limit is actually being used
+        if (target > limit && inFlight + 1 < limit / 2) {
+            return;
+        }
+        limit = Math.min(maxLimit, Math.max(minLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+@Configuration
+public class BulkheadConfig {
+
+    // Runs ahead of Spring Security, whose authentication already queries the database
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${app.bulkhead.retry-after-seconds:2}") long retryAfterSeconds) {
+        List<BulkheadFilter.Group> groups = List.of(
+                group(environment, "api-admin", BulkheadFilter.pathPrefix("/api/admin/"), 20, 50, 1000),
+                group(environment, "mvc-admin", BulkheadFilter.pathPrefix("/admin"), 10, 20, 2000),
+                group(environment, "auth", BulkheadFilter.post("/login"), 8, 32, 1000));
+        FilterRegistrationBean<BulkheadFilter> registration =
+                new FilterRegistrationBean<>(new BulkheadFilter(groups, retryAfterSeconds, meterRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    // Settings per group under app.bulkhead.<group>.*
+    private static BulkheadFilter.Group group(Environment environment, String name,
+                                              Predicate<HttpServletRequest> matcher,
+                                              int initialLimit, int maxQueue, long queueTimeoutMillis) {
+        String prefix = "app.bulkhead." + name + ".";
+        return new BulkheadFilter.Group(name, matcher,
+                environment.getProperty(prefix + "initial-limit", Integer.class, initialLimit),
+                environment.getProperty(prefix + "min-limit", Integer.class, 2),
+                environment.getProperty(prefix + "max-limit", Integer.class, initialLimit * 4),
+                environment.getProperty(prefix + "max-queue", Integer.class, maxQueue),
+                environment.getProperty(prefix + "queue-timeout-ms", Long.class, queueTimeoutMillis));
+    }
+}
@@ -0,0 +1,127 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Admission control in front of the DB-bound endpoint groups. Each group has
+ * its own Bulkhead, so a slow database exhausts at most that group's share of
+ * the Tomcat workers: requests beyond the limit wait in a bounded queue and are
+ * shed with 503 and Retry-After once the queue is full or their wait times
+ * out. Static assets and the login page itself are never held back.
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+
+    private final List<Group> groups;
+    private final long retryAfterSeconds;
+
+    public BulkheadFilter(List<Group> groups, long retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.groups = List.copyOf(groups);
+        this.retryAfterSeconds = retryAfterSeconds;
+        for (Group group : this.groups) {
+            group.bindMetrics(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return groupOf(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Group group = groupOf(request);
+        long queuedAt = System.nanoTime();
+        long traceQueued = RequestTrace.begin(RequestTrace.Phase.QUEUE);
+        Bulkhead.Admission admission;
+        try {
+            admission = group.bulkhead.acquire(group.queueTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admission = Bulkhead.Admission.TIMED_OUT;
+        }
+        if (admission != Bulkhead.Admission.ADMITTED) {
+            group.rejected(admission).increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("Server is busy. Try again in " + retryAfterSeconds + " seconds.");
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        group.queueWait.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+        RequestTrace.end(RequestTrace.Phase.QUEUE, traceQueued);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            group.bulkhead.release(System.nanoTime() - startedAt);
+        }
+    }
+
+    private Group groupOf(HttpServletRequest request) {
+        for (Group group : groups) {
+            if (group.matcher.test(request)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    static Predicate<HttpServletRequest> pathPrefix(String prefix) {
+        return request -> request.getServletPath().startsWith(prefix);
+    }
+
+    static Predicate<HttpServletRequest> post(String path) {
+        return request -> HttpMethod.POST.matches(request.getMethod()) && path.equals(request.getServletPath());
+    }
+
+    public static class Group {
+
+        private final String name;
+        private final Predicate<HttpServletRequest> matcher;
+        private final Bulkhead bulkhead;
+        private final long queueTimeoutMillis;
+
+        private Counter queueFull;
+        private Counter timedOut;
+        private Timer queueWait;
+
+        Group(String name, Predicate<HttpServletRequest> matcher, int initialLimit, int minLimit, int maxLimit,
+              int maxQueue, long queueTimeoutMillis) {
+            this.name = name;
+            this.matcher = matcher;
+            this.bulkhead = new Bulkhead(initialLimit, minLimit, maxLimit, maxQueue);
+            this.queueTimeoutMillis = queueTimeoutMillis;
+        }
+
+        private void bindMetrics(MeterRegistry meterRegistry) {
+            queueFull = meterRegistry.counter("bulkhead.rejected", "group", name, "reason", "queue-full");
+            timedOut = meterRegistry.counter("bulkhead.rejected", "group", name, "reason", "timeout");
+            queueWait = meterRegistry.timer("bulkhead.queue.wait", "group", name);
+            Gauge.builder("bulkhead.limit", bulkhead, Bulkhead::limit).tag("group", name).register(meterRegistry);
+            Gauge.builder("bulkhead.in.flight", bulkhead, Bulkhead::inFlight).tag("group", name).register(meterRegistry);
+            Gauge.builder("bulkhead.queued", bulkhead, Bulkhead::queued).tag("group", name).register(meterRegistry);
+        }
+
+        private Counter rejected(Bulkhead.Admission admission) {
+            return admission == Bulkhead.Admission.QUEUE_FULL ? queueFull : timedOut;
+        }
+    }
+}
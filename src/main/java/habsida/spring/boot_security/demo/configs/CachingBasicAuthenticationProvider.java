@@ -0,0 +1,75 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.SessionUser;
+import habsida.spring.boot_security.demo.service.VerifiedCredentialCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * Authenticates HTTP Basic requests under /api/ through VerifiedCredentialCache,
+ * falling back to the DAO provider (user lookup plus BCrypt) on a miss. The
+ * lookup reads the primary, uncached, so an entry just invalidated is never
+ * refilled from a stale replica or cache row. Misses go through LoginThrottle like form logins do, since Basic never passes
+ * LoginThrottleFilter; a hit needs no throttling, as only a correct password
+ * can produce one.
+ */
+public class CachingBasicAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final VerifiedCredentialCache cache;
+    private final LoginThrottle loginThrottle;
+
+    public CachingBasicAuthenticationProvider(AuthenticationProvider delegate,
+                                              VerifiedCredentialCache cache,
+                                              LoginThrottle loginThrottle) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String email = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (email == null || !(credentials instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        String key = cache.keyOf(email, password);
+        SessionUser cached = cache.get(key);
+        if (cached != null) {
+            UsernamePasswordAuthenticationToken result =
+                    UsernamePasswordAuthenticationToken.authenticated(cached, null, cached.getAuthorities());
+            result.setDetails(authentication.getDetails());
+            return result;
+        }
+
+        String ip = authentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress() : "unknown";
+        if (loginThrottle.tryAcquire(email, ip) > 0) {
+            throw new LockedException("Too many login attempts");
+        }
+        long generation = cache.generation();
+        Authentication result;
+        try {
+            result = delegate.authenticate(authentication);
+        } catch (BadCredentialsException e) {
+            loginThrottle.recordFailure(email, ip);
+            throw e;
+        }
+        loginThrottle.recordSuccess(email);
+        if (result != null && result.getPrincipal() instanceof SessionUser user) {
+            cache.put(key, user, generation);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
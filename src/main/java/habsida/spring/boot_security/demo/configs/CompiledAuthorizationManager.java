@@ -0,0 +1,292 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * URL authorization rules compiled into one path-segment trie per HTTP method.
+ * A request walks its trie once, segment by segment, and the first declared
+ * rule that matches wins, as with a chain of requestMatchers. Every authority
+ * named by a rule gets a bit, so a rule's requirement is a bit mask and the
+ * decision for a caller is a single AND against the bits of their authorities.
+ * Patterns are made of literal segments, "*" or "{name}" for one segment and
+ * a trailing "**" for any number of them.
+ */
+public final class CompiledAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private static final List<String> INDEXED_METHODS = List.of(
+            "GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE");
+
+    private final Node[] tries;
+    private final Rule otherwise;
+    private final Map<String, Long> authorityBits;
+
+    private CompiledAuthorizationManager(Node[] tries, Rule otherwise, Map<String, Long> authorityBits) {
+        this.tries = tries;
+        this.otherwise = otherwise;
+        this.authorityBits = authorityBits;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        HttpServletRequest request = context.getRequest();
+        Rule rule = resolve(request.getMethod(), request.getServletPath());
+        if (rule.permitAll()) {
+            // The security context is not even loaded
+            return GRANTED;
+        }
+        return (rule.required & authorityBits(authentication.get())) != 0 ? GRANTED : DENIED;
+    }
+
+    Rule resolve(String method, String path) {
+        Rule rule = match(tries[slot(method)], path, 0);
+        return rule != null && rule.order < otherwise.order ? rule : otherwise;
+    }
+
+    private long authorityBits(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return 0;
+        }
+        long bits = 0;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            Long bit = authorityBits.get(authority.getAuthority());
+            if (bit != null) {
+                bits |= bit;
+            }
+        }
+        return bits;
+    }
+
+    // Lowest-order rule matching path[from..]; empty segments are skipped
+    private static Rule match(Node node, String path, int from) {
+        while (from < path.length() && path.charAt(from) == '/') {
+            from++;
+        }
+        Rule best = node.anyDepth;
+        if (from == path.length()) {
+            return first(best, node.exact);
+        }
+        int end = path.indexOf('/', from);
+        if (end < 0) {
+            end = path.length();
+        }
+        Node literal = node.literal(path, from, end);
+        if (literal != null) {
+            best = first(best, match(literal, path, end));
+        }
+        if (node.anySegment != null) {
+            best = first(best, match(node.anySegment, path, end));
+        }
+        return best;
+    }
+
+    private static Rule first(Rule a, Rule b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.order < b.order ? a : b;
+    }
+
+    private static int slot(String method) {
+        int slot = INDEXED_METHODS.indexOf(method);
+        return slot < 0 ? INDEXED_METHODS.size() : slot;
+    }
+
+    /**
+     * What a rule requires: nothing (permitAll), or any one of a set of authorities.
+     */
+    public static final class Access {
+
+        private static final Access PERMIT_ALL = new Access(Set.of());
+
+        private final Set<String> anyOf;
+
+        private Access(Set<String> anyOf) {
+            this.anyOf = anyOf;
+        }
+
+        public static Access permitAll() {
+            return PERMIT_ALL;
+        }
+
+        public static Access hasRole(String role) {
+            return hasAnyRole(role);
+        }
+
+        public static Access hasAnyRole(String... roles) {
+            Set<String> authorities = new LinkedHashSet<>();
+            for (String role : roles) {
+                authorities.add("ROLE_" + role);
+            }
+            return new Access(authorities);
+        }
+    }
+
+    static final class Rule {
+
+        private final int order;
+        private final long required;
+
+        Rule(int order, long required) {
+            this.order = order;
+            this.required = required;
+        }
+
+        boolean permitAll() {
+            return required == 0;
+        }
+    }
+
+    private static final class Node {
+
+        // Few children per node, so a scan without allocating a substring beats hashing
+        private String[] names = new String[0];
+        private Node[] children = new Node[0];
+        private Node anySegment;
+        private Rule exact;
+        private Rule anyDepth;
+
+        Node literal(String path, int from, int end) {
+            int length = end - from;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].length() == length && path.regionMatches(from, names[i], 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node child(String segment) {
+            if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}"))) {
+                if (anySegment == null) {
+                    anySegment = new Node();
+                }
+                return anySegment;
+            }
+            if (segment.contains("*") || segment.contains("{")) {
+                throw new IllegalArgumentException("Unsupported path segment: " + segment);
+            }
+            Node child = literal(segment, 0, segment.length());
+            if (child == null) {
+                child = new Node();
+                names = Arrays.copyOf(names, names.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                names[names.length - 1] = segment;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<String> patterns = new ArrayList<>();
+        private final List<Set<String>> methods = new ArrayList<>();
+        private final List<Access> accesses = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        // Rules are tried in the order they are added; no methods means any method
+        public Builder rule(String pattern, Access access, HttpMethod... methods) {
+            if (!pattern.startsWith("/")) {
+                throw new IllegalArgumentException("Pattern must start with '/': " + pattern);
+            }
+            Set<String> names = new LinkedHashSet<>();
+            for (HttpMethod method : methods) {
+                names.add(method.name());
+            }
+            this.patterns.add(pattern);
+            this.methods.add(names);
+            this.accesses.add(access);
+            return this;
+        }
+
+        public CompiledAuthorizationManager build(Access otherwise) {
+            Map<String, Long> authorityBits = new LinkedHashMap<>();
+            List<Access> all = new ArrayList<>(accesses);
+            all.add(otherwise);
+            for (Access access : all) {
+                for (String authority : access.anyOf) {
+                    if (!authorityBits.containsKey(authority)) {
+                        if (authorityBits.size() == Long.SIZE) {
+                            throw new IllegalStateException("More than " + Long.SIZE + " authorities");
+                        }
+                        authorityBits.put(authority, 1L << authorityBits.size());
+                    }
+                }
+            }
+
+            Node[] tries = new Node[INDEXED_METHODS.size() + 1];
+            for (int slot = 0; slot < tries.length; slot++) {
+                tries[slot] = new Node();
+            }
+            for (int order = 0; order < patterns.size(); order++) {
+                Rule rule = new Rule(order, mask(accesses.get(order), authorityBits));
+                for (int slot = 0; slot < tries.length; slot++) {
+                    Set<String> ruleMethods = methods.get(order);
+                    if (ruleMethods.isEmpty() || (slot < INDEXED_METHODS.size()
+                            && ruleMethods.contains(INDEXED_METHODS.get(slot)))) {
+                        insert(tries[slot], patterns.get(order), rule);
+                    }
+                }
+            }
+            return new CompiledAuthorizationManager(tries,
+                    new Rule(Integer.MAX_VALUE, mask(otherwise, authorityBits)), Map.copyOf(authorityBits));
+        }
+
+        private static long mask(Access access, Map<String, Long> authorityBits) {
+            long mask = 0;
+            for (String authority : access.anyOf) {
+                mask |= authorityBits.get(authority);
+            }
+            return mask;
+        }
+
+        // An earlier rule on the same pattern shadows later ones, so the first one stays
+        private static void insert(Node root, String pattern, Rule rule) {
+            Node node = root;
+            String[] segments = pattern.substring(1).split("/");
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (segment.equals("**")) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("'**' must be the last segment: " + pattern);
+                    }
+                    if (node.anyDepth == null) {
+                        node.anyDepth = rule;
+                    }
+                    return;
+                }
+                node = node.child(segment);
+            }
+            if (node.exact == null) {
+                node.exact = rule;
+            }
+        }
+    }
+}
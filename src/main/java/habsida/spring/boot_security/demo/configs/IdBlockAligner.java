@@ -0,0 +1,52 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Keeps the id_blocks table ahead of the ids already in use. Tables created
+ * while ids were AUTO_INCREMENT hold rows the generator knows nothing about;
+ * before the first request each segment is raised to max(id) if it is behind.
+ * The update only ever raises the value, so nodes starting together cannot
+ * move it backwards. The table stores the last id handed out (Hibernate's
+ * default) and blocks are pooled-lo: a node that moves the value from n to
+ * n + allocationSize owns ids n + 1 .. n + allocationSize.
+ */
+@Component
+public class IdBlockAligner {
+
+    private static final Logger log = LoggerFactory.getLogger(IdBlockAligner.class);
+
+    // Generator segment -> table whose ids it hands out
+    private static final Map<String, String> SEGMENTS = Map.of("users", "users", "roles", "roles");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // The EntityManagerFactory dependency makes sure the schema exists first
+    public IdBlockAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void align() {
+        SEGMENTS.forEach((segment, table) -> {
+            long lastUsed = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            int raised = jdbcTemplate.update(
+                    "UPDATE id_blocks SET next_val = ? WHERE segment_name = ? AND next_val < ?", lastUsed, segment, lastUsed);
+            if (raised == 0 && jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM id_blocks WHERE segment_name = ?", Integer.class, segment) == 0) {
+                jdbcTemplate.update("INSERT INTO id_blocks (segment_name, next_val) VALUES (?, ?)", segment, lastUsed);
+                raised = 1;
+            }
+            if (raised > 0) {
+                log.info("Id block segment '{}' continues after {}", segment, lastUsed);
+            }
+        });
+    }
+}
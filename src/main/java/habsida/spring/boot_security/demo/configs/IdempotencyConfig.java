@@ -0,0 +1,40 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class IdempotencyConfig {
+
+    // "memory" keeps keys on this node, "jdbc" shares them through the database
+    @Bean
+    public IdempotencyStore idempotencyStore(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.idempotency.store:memory}") String store,
+            @Value("${app.idempotency.ttl-ms:86400000}") long ttlMillis,
+            @Value("${app.idempotency.max-entries:10000}") int maxEntries,
+            @Value("${app.idempotency.lock-timeout-ms:60000}") long lockTimeoutMillis) {
+        if (store.equals("jdbc")) {
+            return new JdbcIdempotencyStore(jdbcTemplate, ttlMillis, lockTimeoutMillis);
+        }
+        return new InMemoryIdempotencyStore(ttlMillis, maxEntries);
+    }
+
+    // Behind Spring Security: keys are scoped to the authenticated user
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore idempotencyStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis,
+            @Value("${app.idempotency.max-body-bytes:60000}") int maxBodyBytes) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(idempotencyStore, waitTimeoutMillis, maxBodyBytes, meterRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,362 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Honours the Idempotency-Key header on POST, PUT and DELETE under /api/admin/.
+ * The first request with a key executes and its response (unless it is a 5xx)
+ * is recorded; a repeat of the same request gets the recorded response back
+ * with Idempotent-Replayed: true instead of executing again. A repeat that
+ * arrives while the first is still running waits for it, up to wait-timeout,
+ * then gets 409. A replay restores the status, body and the headers the
+ * handler set (Location and the like), except cookies and framing headers. Reusing a key for a different request is answered with 422.
+ * Keys are scoped to the authenticated user, so this runs behind Spring
+ * Security.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    // Set afresh on every response, or must not be handed to a second caller
+    private static final Set<String> UNREPLAYED_HEADERS = Set.of("content-type", "content-length",
+            "transfer-encoding", "connection", "date", "set-cookie", REPLAYED_HEADER.toLowerCase(Locale.ROOT));
+    private static final long POLL_MILLIS = 50;
+
+    private final IdempotencyStore store;
+    private final long waitTimeoutMillis;
+    private final int maxBodyBytes;
+    private final MeterRegistry meterRegistry;
+
+    // Requests executing on this node, so duplicates can wait without polling the store
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(IdempotencyStore store, long waitTimeoutMillis, int maxBodyBytes, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.maxBodyBytes = maxBodyBytes;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        return request.getHeader(KEY_HEADER) == null
+                || !request.getServletPath().startsWith("/api/admin/")
+                || !(HttpMethod.POST.matches(method) || HttpMethod.PUT.matches(method) || HttpMethod.DELETE.matches(method));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String key = request.getHeader(KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, KEY_HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters", "invalid");
+            return;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large for an idempotent request", "invalid");
+            return;
+        }
+        Principal principal = request.getUserPrincipal();
+        String scopedKey = sha256(principal == null ? "" : principal.getName(), key);
+        String fingerprint = sha256(request.getMethod() + " " + request.getRequestURI()
+                + (request.getQueryString() == null ? "" : "?" + request.getQueryString()), body);
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+
+        while (true) {
+            InFlight mine = new InFlight(fingerprint);
+            InFlight running = inFlight.putIfAbsent(scopedKey, mine);
+            if (running != null) {
+                if (!running.fingerprint.equals(fingerprint)) {
+                    mismatch(response);
+                    return;
+                }
+                Optional<IdempotencyStore.StoredResponse> stored = await(running, deadline);
+                if (stored == null) {
+                    tooEarly(response);
+                    return;
+                }
+                if (stored.isPresent()) {
+                    replay(response, stored.get(), "waited");
+                    return;
+                }
+                // The first request failed and released the key; try to claim it ourselves
+                continue;
+            }
+            try {
+                IdempotencyStore.Claim claim = store.claim(scopedKey, fingerprint, System.currentTimeMillis());
+                if (claim.getState() != IdempotencyStore.State.ACQUIRED && !claim.getFingerprint().equals(fingerprint)) {
+                    mine.done.complete(Optional.empty());
+                    mismatch(response);
+                    return;
+                }
+                switch (claim.getState()) {
+                    case COMPLETED -> {
+                        mine.done.complete(Optional.of(claim.getResponse()));
+                        replay(response, claim.getResponse(), "replayed");
+                        return;
+                    }
+                    case IN_PROGRESS -> {
+                        // Executing on another node
+                        Optional<IdempotencyStore.StoredResponse> stored = poll(scopedKey, deadline);
+                        mine.done.complete(stored == null ? Optional.empty() : stored);
+                        if (stored == null) {
+                            tooEarly(response);
+                            return;
+                        }
+                        if (stored.isPresent()) {
+                            replay(response, stored.get(), "waited");
+                            return;
+                        }
+                        continue;
+                    }
+                    case ACQUIRED -> {
+                        mine.done.complete(execute(new CachedBodyRequest(request, body), response, filterChain,
+                                scopedKey, fingerprint));
+                        return;
+                    }
+                }
+            } finally {
+                // Waiters are woken with "released" if nothing else completed it
+                mine.done.complete(Optional.empty());
+                inFlight.remove(scopedKey, mine);
+            }
+        }
+    }
+
+    private Optional<IdempotencyStore.StoredResponse> execute(HttpServletRequest request, HttpServletResponse response,
+                                                              FilterChain filterChain, String key, String fingerprint)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean recorded = false;
+        try {
+            filterChain.doFilter(request, captured);
+            meterRegistry.counter("idempotency.requests", "result", "executed").increment();
+            int status = captured.getStatus();
+            byte[] responseBody = captured.getContentAsByteArray();
+            if (status < 500 && responseBody.length <= maxBodyBytes) {
+                IdempotencyStore.StoredResponse stored = new IdempotencyStore.StoredResponse(fingerprint, status,
+                        captured.getContentType(), replayableHeaders(captured), responseBody);
+                store.complete(key, stored);
+                recorded = true;
+                return Optional.of(stored);
+            }
+            return Optional.empty();
+        } finally {
+            if (!recorded) {
+                store.release(key);
+            }
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private static Map<String, List<String>> replayableHeaders(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            String lowerCase = name.toLowerCase(Locale.ROOT);
+            if (!UNREPLAYED_HEADERS.contains(lowerCase) && !headers.containsKey(lowerCase)) {
+                headers.put(lowerCase, List.copyOf(response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    // Empty when the first request released the key, null when the wait timed out
+    private Optional<IdempotencyStore.StoredResponse> await(InFlight running, long deadline) throws IOException {
+        try {
+            return running.done.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Optional<IdempotencyStore.StoredResponse> poll(String key, long deadline) {
+        while (System.currentTimeMillis() < deadline) {
+            Optional<IdempotencyStore.Claim> claim = store.find(key, System.currentTimeMillis());
+            if (claim.isEmpty()) {
+                return Optional.empty();
+            }
+            if (claim.get().getState() == IdempotencyStore.State.COMPLETED) {
+                return Optional.of(claim.get().getResponse());
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored, String result)
+            throws IOException {
+        meterRegistry.counter("idempotency.requests", "result", result).increment();
+        response.setStatus(stored.getStatus());
+        stored.getHeaders().forEach((name, values) -> {
+            for (int i = 0; i < values.size(); i++) {
+                if (i == 0) {
+                    response.setHeader(name, values.get(i));
+                } else {
+                    response.addHeader(name, values.get(i));
+                }
+            }
+        });
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void mismatch(HttpServletResponse response) throws IOException {
+        reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                KEY_HEADER + " was already used for a different request", "mismatch");
+    }
+
+    private void tooEarly(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        reject(response, HttpStatus.CONFLICT, "A request with this " + KEY_HEADER + " is still in progress", "conflict");
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message, String result) throws IOException {
+        meterRegistry.counter("idempotency.requests", "result", result).increment();
+        response.setStatus(status.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(message);
+    }
+
+    private static String sha256(String text, String more) {
+        return sha256(text, more.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String text, byte[] more) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(more);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class InFlight {
+
+        private final String fingerprint;
+        private final CompletableFuture<Optional<IdempotencyStore.StoredResponse>> done = new CompletableFuture<>();
+
+        InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    // The body was read up front for the fingerprint; the application reads this copy
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package habsida.spring.boot_security.demo.configs;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Idempotency keys and the responses recorded for them. A key is first
+ * claimed (in progress) by the request that executes it, then either
+ * completed with its response or released so that a retry executes again.
+ * Entries expire ttl after they were claimed.
+ */
+public interface IdempotencyStore {
+
+    // Atomically claims the key, or reports who already has it
+    Claim claim(String key, String fingerprint, long now);
+
+    void complete(String key, StoredResponse response);
+
+    void release(String key);
+
+    Optional<Claim> find(String key, long now);
+
+    void evictExpired();
+
+    enum State { ACQUIRED, IN_PROGRESS, COMPLETED }
+
+    @Getter
+    @AllArgsConstructor
+    class Claim {
+
+        private static final Claim ACQUIRED = new Claim(State.ACQUIRED, null, null);
+
+        private final State state;
+        private final String fingerprint;
+        private final StoredResponse response;
+
+        static Claim acquired() {
+            return ACQUIRED;
+        }
+
+        static Claim inProgress(String fingerprint) {
+            return new Claim(State.IN_PROGRESS, fingerprint, null);
+        }
+
+        static Claim completed(StoredResponse response) {
+            return new Claim(State.COMPLETED, response.getFingerprint(), response);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    class StoredResponse {
+        private final String fingerprint;
+        private final int status;
+        private final String contentType;
+        // Other headers the handler set, such as Location, in the order they were set
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+    }
+}
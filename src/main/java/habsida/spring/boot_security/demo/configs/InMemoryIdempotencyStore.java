@@ -0,0 +1,93 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Idempotency keys of this node, in claim order. Keys share one TTL, so the
+ * oldest entries are also the first to expire; past max-entries the oldest
+ * key is dropped even if it has not expired yet.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    @Override
+    public synchronized Claim claim(String key, String fingerprint, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.claim();
+        }
+        entries.remove(key);
+        entries.put(key, new Entry(fingerprint, now + ttlMillis));
+        evict(now);
+        return Claim.acquired();
+    }
+
+    @Override
+    public synchronized void complete(String key, StoredResponse response) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.response = response;
+        }
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public synchronized Optional<Claim> find(String key, long now) {
+        Entry entry = entries.get(key);
+        return entry == null || entry.expiresAt <= now ? Optional.empty() : Optional.of(entry.claim());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.idempotency.eviction-interval-ms:60000}")
+    public synchronized void evictExpired() {
+        evict(System.currentTimeMillis());
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Entry>> oldestFirst = entries.entrySet().iterator();
+        while (oldestFirst.hasNext()) {
+            Entry entry = oldestFirst.next().getValue();
+            if (entry.expiresAt > now && entries.size() <= maxEntries) {
+                break;
+            }
+            oldestFirst.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final long expiresAt;
+        private StoredResponse response;
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        Claim claim() {
+            return response != null ? Claim.completed(response) : Claim.inProgress(fingerprint);
+        }
+    }
+}
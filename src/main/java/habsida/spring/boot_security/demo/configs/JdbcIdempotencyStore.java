@@ -0,0 +1,121 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Idempotency keys in the application database (table idempotency_keys), so
+ * that a retry landing on another node is still recognised. The primary key
+ * makes the claim atomic across nodes. A claim left in progress by a node that
+ * died is taken over once it is older than the lock timeout.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS idempotency_keys ("
+            + " idempotency_key CHAR(64) NOT NULL PRIMARY KEY,"
+            + " fingerprint CHAR(64) NOT NULL,"
+            + " completed BOOLEAN NOT NULL,"
+            + " status INT,"
+            + " content_type VARCHAR(255),"
+            + " headers TEXT,"
+            + " body BLOB,"
+            + " claimed_at BIGINT NOT NULL,"
+            + " expires_at BIGINT NOT NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final long lockTimeoutMillis;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, long ttlMillis, long lockTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlMillis;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    @Override
+    public Claim claim(String key, String fingerprint, long now) {
+        // Expired keys may be claimed afresh
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND expires_at <= ?", key, now);
+        try {
+            jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, fingerprint, completed, claimed_at, expires_at)"
+                    + " VALUES (?, ?, FALSE, ?, ?)", key, fingerprint, now, now + ttlMillis);
+            return Claim.acquired();
+        } catch (DuplicateKeyException e) {
+            Optional<Claim> existing = find(key, now);
+            if (existing.isEmpty()) {
+                // Released in between; let the caller try again
+                return Claim.inProgress(fingerprint);
+            }
+            if (existing.get().getState() == State.IN_PROGRESS) {
+                int takenOver = jdbcTemplate.update("UPDATE idempotency_keys SET fingerprint = ?, claimed_at = ?, expires_at = ?"
+                                + " WHERE idempotency_key = ? AND completed = FALSE AND claimed_at < ?",
+                        fingerprint, now, now + ttlMillis, key, now - lockTimeoutMillis);
+                if (takenOver == 1) {
+                    return Claim.acquired();
+                }
+            }
+            return existing.get();
+        }
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        jdbcTemplate.update("UPDATE idempotency_keys SET completed = TRUE, status = ?, content_type = ?, headers = ?, body = ?"
+                        + " WHERE idempotency_key = ? AND fingerprint = ?",
+                response.getStatus(), response.getContentType(), format(response.getHeaders()), response.getBody(),
+                key, response.getFingerprint());
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND completed = FALSE", key);
+    }
+
+    @Override
+    public Optional<Claim> find(String key, long now) {
+        List<Claim> claims = jdbcTemplate.query(
+                "SELECT fingerprint, completed, status, content_type, headers, body FROM idempotency_keys"
+                        + " WHERE idempotency_key = ? AND expires_at > ?",
+                (rs, rowNum) -> rs.getBoolean("completed")
+                        ? Claim.completed(new StoredResponse(rs.getString("fingerprint"), rs.getInt("status"),
+                                rs.getString("content_type"), parse(rs.getString("headers")), rs.getBytes("body")))
+                        : Claim.inProgress(rs.getString("fingerprint")),
+                key, now);
+        return claims.stream().findFirst();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.idempotency.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at <= ?", System.currentTimeMillis());
+    }
+
+    // One "name: value" line per value; header values cannot contain line breaks
+    private static String format(Map<String, List<String>> headers) {
+        StringBuilder text = new StringBuilder();
+        headers.forEach((name, values) -> values.forEach(value -> text.append(name).append(": ").append(value).append('\n')));
+        return text.toString();
+    }
+
+    private static Map<String, List<String>> parse(String text) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        if (text != null) {
+            for (String line : text.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.computeIfAbsent(line.substring(0, colon), name -> new ArrayList<>())
+                            .add(line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,31 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.session.JdbcSessionDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.session.JdbcSessionProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+
+import javax.sql.DataSource;
+
+/**
+ * Opt-in JDBC session store (app.session.store=jdbc) so several nodes can share
+ * sessions through the application database. Without it sessions stay in the
+ * servlet container's memory. Either way the stored principal is SessionUser,
+ * which serializes to a few fields.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.session.store", havingValue = "jdbc")
+@EnableJdbcHttpSession
+public class JdbcSessionConfig {
+
+    // Creates SPRING_SESSION tables if missing; "already exists" errors are ignored
+    @Bean
+    public JdbcSessionDataSourceScriptDatabaseInitializer jdbcSessionSchemaInitializer(DataSource dataSource) {
+        JdbcSessionProperties properties = new JdbcSessionProperties();
+        properties.setInitializeSchema(DatabaseInitializationMode.ALWAYS);
+        return new JdbcSessionDataSourceScriptDatabaseInitializer(dataSource, properties);
+    }
+}
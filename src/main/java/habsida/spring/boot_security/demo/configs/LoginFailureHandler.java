@@ -0,0 +1,28 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.io.IOException;
+
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginFailureHandler(LoginThrottle loginThrottle) {
+        super("/login?error");
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        AuthenticationException exception)
+            throws IOException, ServletException {
+        loginThrottle.recordFailure(request.getParameter("username"), request.getRemoteAddr());
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
@@ -0,0 +1,105 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+@Component
+public class LoginThrottle {
+
+    private final TokenBucketTable emailBuckets;
+    private final TokenBucketTable ipBuckets;
+
+    private final int emailCapacity;
+    private final long emailRefillMillis;
+    private final int ipCapacity;
+    private final long ipRefillMillis;
+    private final int freeFailures;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final Counter emailRejections;
+    private final Counter ipRejections;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${app.login-throttle.stripes:64}") int stripes,
+                         @Value("${app.login-throttle.max-entries:100000}") int maxEntries,
+                         @Value("${app.login-throttle.idle-eviction-ms:900000}") long idleMillis,
+                         @Value("${app.login-throttle.email.capacity:10}") int emailCapacity,
+                         @Value("${app.login-throttle.email.refill-ms:6000}") long emailRefillMillis,
+                         @Value("${app.login-throttle.ip.capacity:50}") int ipCapacity,
+                         @Value("${app.login-throttle.ip.refill-ms:1000}") long ipRefillMillis,
+                         @Value("${app.login-throttle.backoff.free-failures:3}") int freeFailures,
+                         @Value("${app.login-throttle.backoff.base-ms:1000}") long baseBackoffMillis,
+                         @Value("${app.login-throttle.backoff.max-ms:900000}") long maxBackoffMillis) {
+        this.emailBuckets = new TokenBucketTable(stripes, maxEntries, emailCapacity, idleMillis);
+        this.ipBuckets = new TokenBucketTable(stripes, maxEntries, ipCapacity, idleMillis);
+        this.emailCapacity = emailCapacity;
+        this.emailRefillMillis = emailRefillMillis;
+        this.ipCapacity = ipCapacity;
+        this.ipRefillMillis = ipRefillMillis;
+        this.freeFailures = freeFailures;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+
+        this.emailRejections = meterRegistry.counter("login.throttle.rejected", "key", "email");
+        this.ipRejections = meterRegistry.counter("login.throttle.rejected", "key", "ip");
+        Gauge.builder("login.throttle.buckets", emailBuckets, TokenBucketTable::size).tag("key", "email").register(meterRegistry);
+        Gauge.builder("login.throttle.buckets", ipBuckets, TokenBucketTable::size).tag("key", "ip").register(meterRegistry);
+    }
+
+    // Returns 0 if the attempt may proceed, otherwise the milliseconds until it may be retried
+    public long tryAcquire(String email, String ip) {
+        long now = System.currentTimeMillis();
+        long ipWait = ipBuckets.bucket(ip, ipCapacity, now).tryTake(now, ipCapacity, ipRefillMillis);
+        if (ipWait > 0) {
+            ipRejections.increment();
+            return ipWait;
+        }
+        if (email == null) {
+            return 0;
+        }
+        long emailWait = emailBuckets.bucket(normalize(email), emailCapacity, now)
+                .tryTake(now, emailCapacity, emailRefillMillis);
+        if (emailWait > 0) {
+            emailRejections.increment();
+        }
+        return emailWait;
+    }
+
+    public void recordFailure(String email, String ip) {
+        long now = System.currentTimeMillis();
+        ipBuckets.bucket(ip, ipCapacity, now).recordFailure(now, freeFailures, baseBackoffMillis, maxBackoffMillis);
+        if (email != null) {
+            emailBuckets.bucket(normalize(email), emailCapacity, now)
+                    .recordFailure(now, freeFailures, baseBackoffMillis, maxBackoffMillis);
+        }
+    }
+
+    // A successful login clears the account's backoff; the IP keeps its history
+    public void recordSuccess(String email) {
+        if (email == null) {
+            return;
+        }
+        TokenBucket bucket = emailBuckets.existing(normalize(email));
+        if (bucket != null) {
+            bucket.reset();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.login-throttle.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.currentTimeMillis();
+        emailBuckets.evictIdle(now);
+        ipBuckets.evictIdle(now);
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
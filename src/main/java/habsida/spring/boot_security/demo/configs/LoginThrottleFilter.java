@@ -0,0 +1,45 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Rejects login attempts over the limit before UsernamePasswordAuthenticationFilter
+ * runs, so a throttled attempt costs neither the user lookup nor the BCrypt check.
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || !"/login".equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long waitMillis = loginThrottle.tryAcquire(request.getParameter("username"), request.getRemoteAddr());
+        if (waitMillis > 0) {
+            long retryAfter = Math.max(1, (waitMillis + 999) / 1000);
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("Too many login attempts. Try again in " + retryAfter + " seconds.");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -1,14 +1,50 @@
 package habsida.spring.boot_security.demo.configs;
 
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.CachingResourceResolver;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
 
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
+
+    // Content-versioned URLs never change; plain ones are revalidated
+    private final PrecompressedResourceTransformer precompressedResourceTransformer = new PrecompressedResourceTransformer(
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable(), CacheControl.noCache().cachePublic());
+
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/login").setViewName("login");
         registry.addViewController("/403").setViewName("403");
     }
-}
\ No newline at end of file
+
+    // One handler per prefix, so a path only resolves under its own directory. The resolver cache is
+    // per handler too, as it is keyed by the path within the handler.
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        for (String prefix : new String[]{"vendor", "css", "js"}) {
+            registry.addResourceHandler("/" + prefix + "/**")
+                    .addResourceLocations("classpath:/static/" + prefix + "/")
+                    .resourceChain(false)
+                    .addResolver(new CachingResourceResolver(new ConcurrentMapCache("static-" + prefix)))
+                    .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                    .addTransformer(precompressedResourceTransformer)
+                    .addTransformer(new CssLinkResourceTransformer());
+        }
+    }
+
+    // Rewrites @{...} links in templates to their fingerprinted URLs
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+}
@@ -0,0 +1,264 @@
+package habsida.spring.boot_security.demo.configs;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceTransformer;
+import org.springframework.web.servlet.resource.ResourceTransformerChain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * First transformer of the static resource chain. Serves brotli or gzip
+ * variants of text assets, compressed once from what the rest of the chain
+ * produces (so CSS links are already fingerprinted) and kept in memory; every
+ * encoding of a URL decodes to the same bytes. Also sets Cache-Control: only a
+ * request resolved through its content version may be cached as immutable,
+ * plain URLs are revalidated.
+ */
+public class PrecompressedResourceTransformer implements ResourceTransformer {
+
+    private static final Logger log = LoggerFactory.getLogger(PrecompressedResourceTransformer.class);
+
+    private static final Set<String> COMPRESSIBLE = Set.of("css", "js", "svg", "json", "txt", "map");
+    private static final String IDENTITY = "identity";
+
+    private final CacheControl versionedCacheControl;
+    private final CacheControl plainCacheControl;
+    private final boolean brotliAvailable;
+    // Transformed content per resource URL and coding
+    private final Map<String, byte[]> variants = new ConcurrentHashMap<>();
+
+    public PrecompressedResourceTransformer(CacheControl versionedCacheControl, CacheControl plainCacheControl) {
+        this.versionedCacheControl = versionedCacheControl;
+        this.plainCacheControl = plainCacheControl;
+        boolean available;
+        try {
+            Brotli4jLoader.ensureAvailability();
+            available = true;
+        } catch (Throwable e) {
+            log.info("Brotli encoder not available on this platform, serving gzip only");
+            available = false;
+        }
+        this.brotliAvailable = available;
+    }
+
+    @Override
+    public Resource transform(HttpServletRequest request, Resource resource, ResourceTransformerChain transformerChain)
+            throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        if (resource instanceof HttpResource httpResource) {
+            headers.putAll(httpResource.getResponseHeaders());
+        }
+        // VersionResourceResolver tags a resource resolved through its content version with an ETag of that version
+        boolean versioned = headers.getETag() != null;
+        headers.setCacheControl((versioned ? versionedCacheControl : plainCacheControl).getHeaderValue());
+        if (!isCompressible(resource)) {
+            return new ServedResource(transformerChain.transform(request, resource), headers);
+        }
+
+        String coding = coding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String url = resource.getURL().toString();
+        byte[] content = variants.get(url + "#" + coding);
+        if (content == null) {
+            byte[] identity = variants.get(url + "#" + IDENTITY);
+            if (identity == null) {
+                identity = transformerChain.transform(request, resource).getContentAsByteArray();
+                variants.putIfAbsent(url + "#" + IDENTITY, identity);
+            }
+            content = IDENTITY.equals(coding) ? identity : compress(identity, coding);
+            variants.putIfAbsent(url + "#" + coding, content);
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!IDENTITY.equals(coding)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, coding);
+        }
+        return new EncodedResource(resource, content, headers);
+    }
+
+    // Brotli or gzip, whichever the client weights higher (brotli on a tie); q=0 refuses a coding,
+    // and a coding not listed takes the weight of "*" if given
+    String coding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+        double br = -1;
+        double gzip = -1;
+        double any = 0;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parameters = element.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    q = weight(parameter.substring(2).trim());
+                }
+            }
+            switch (name) {
+                case "br" -> br = q;
+                case "gzip", "x-gzip" -> gzip = q;
+                case "*" -> any = q;
+                default -> { }
+            }
+        }
+        br = brotliAvailable ? (br < 0 ? any : br) : 0;
+        gzip = gzip < 0 ? any : gzip;
+        if (br > 0 && br >= gzip) {
+            return "br";
+        }
+        return gzip > 0 ? "gzip" : IDENTITY;
+    }
+
+    // A malformed weight makes the coding unacceptable rather than preferred
+    private static double weight(String value) {
+        try {
+            double q = Double.parseDouble(value);
+            return q >= 0 && q <= 1 ? q : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] compress(byte[] content, String coding) {
+        try {
+            if ("br".equals(coding)) {
+                return Encoder.compress(content, new Encoder.Parameters().setQuality(11));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(content);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isCompressible(Resource resource) {
+        String filename = resource.getFilename();
+        if (filename == null) {
+            return false;
+        }
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 && COMPRESSIBLE.contains(filename.substring(dot + 1));
+    }
+
+    static class EncodedResource extends ByteArrayResource implements HttpResource {
+
+        private final Resource original;
+        private final HttpHeaders headers;
+
+        EncodedResource(Resource original, byte[] content, HttpHeaders headers) {
+            super(content, original.getDescription());
+            this.original = original;
+            this.headers = headers;
+        }
+
+        @Override
+        public String getFilename() {
+            return original.getFilename();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return original.lastModified();
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    // Binary assets as they are, plus the Cache-Control decided above
+    static class ServedResource extends AbstractResource implements HttpResource {
+
+        private final Resource original;
+        private final HttpHeaders headers;
+
+        ServedResource(Resource original, HttpHeaders headers) {
+            this.original = original;
+            this.headers = headers;
+        }
+
+        @Override
+        public boolean exists() {
+            return original.exists();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return original.getURL();
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return original.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return original.getFile();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return original.getInputStream();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return original.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return original.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return original.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return original.getDescription();
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JpaTransactionManager whose sessions bypass the shared second-level and
+ * query caches when their transaction goes to a replica. A replica behind the
+ * primary would otherwise cache a row, or an empty query result, timestamped
+ * after the write that invalidated it, and every principal would be served
+ * that until the region's TTL. CacheMode.GET would be enough, but Hibernate
+ * 6.5 still stores a cacheable query's result on a miss under GET, so replica
+ * sessions use IGNORE. Primary reads and writes use the caches as before. The
+ * mode is set when the transaction begins, before any query runs.
+ */
+public class ReplicaAwareTransactionManager extends JpaTransactionManager {
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    public ReplicaAwareTransactionManager(ReplicaRoutingDataSource routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        if (routingDataSource.routesToReplica(definition.isReadOnly())) {
+            session().setCacheMode(CacheMode.IGNORE);
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        Session session = session();
+        if (session != null && session.isOpen() && session.getCacheMode() == CacheMode.IGNORE) {
+            session.setCacheMode(CacheMode.NORMAL);
+        }
+        super.doCleanupAfterCompletion(transaction);
+    }
+
+    private Session session() {
+        EntityManagerHolder holder =
+                (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        return holder == null ? null : holder.getEntityManager().unwrap(Session.class);
+    }
+}
@@ -0,0 +1,180 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out replica connections to read-only transactions and primary
+ * connections to everything else. Replicas are taken round-robin; one that
+ * fails to connect is skipped for a cooldown period, and when none is usable
+ * the primary serves the read. A principal whose own write committed less than
+ * the read-your-writes window ago reads from the primary, so replication lag
+ * never hides their change from them.
+ * <p>
+ * Must sit behind a LazyConnectionDataSourceProxy: the read-only flag of the
+ * transaction is only known once the connection is actually needed.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final int MAX_TRACKED_WRITERS = 10_000;
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long readYourWritesMillis;
+    private final long failoverCooldownMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLongArray downUntil;
+    private final Map<String, Long> lastWriteAt = new ConcurrentHashMap<>();
+
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+    private final Counter pinnedReads;
+    private final Counter failovers;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long readYourWritesMillis,
+                                    long failoverCooldownMillis, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.failoverCooldownMillis = failoverCooldownMillis;
+        this.downUntil = new AtomicLongArray(replicas.size());
+        this.primaryConnections = meterRegistry.counter("datasource.routing.connections", "target", "primary");
+        this.replicaConnections = meterRegistry.counter("datasource.routing.connections", "target", "replica");
+        this.pinnedReads = meterRegistry.counter("datasource.routing.read.your.writes");
+        this.failovers = meterRegistry.counter("datasource.routing.failovers");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(username, password);
+    }
+
+    private Connection route(String username, String password) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            String principal = currentPrincipal();
+            if (principal != null && recentlyWrote(principal)) {
+                pinnedReads.increment();
+            } else {
+                Connection replica = replicaConnection(username, password);
+                if (replica != null) {
+                    replicaConnections.increment();
+                    return replica;
+                }
+            }
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            trackWrite(currentPrincipal());
+        }
+        primaryConnections.increment();
+        return connect(primary, username, password);
+    }
+
+    /**
+     * Whether a transaction with this read-only flag, begun now on this thread,
+     * will read from a replica, barring a failover to the primary.
+     */
+    public boolean routesToReplica(boolean readOnly) {
+        if (!readOnly || replicas.isEmpty()) {
+            return false;
+        }
+        String principal = currentPrincipal();
+        return principal == null || !recentlyWrote(principal);
+    }
+
+    private Connection replicaConnection(String username, String password) {
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            if (downUntil.get(index) > now) {
+                continue;
+            }
+            try {
+                return connect(replicas.get(index), username, password);
+            } catch (SQLException e) {
+                downUntil.set(index, now + failoverCooldownMillis);
+                failovers.increment();
+                log.warn("Replica {} unavailable, skipping it for {} ms: {}", index, failoverCooldownMillis, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Recorded after commit, so a rolled back transaction does not pin its principal
+    private void trackWrite(String principal) {
+        if (principal == null || readYourWritesMillis <= 0) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordWrite(principal);
+            }
+        });
+    }
+
+    void recordWrite(String principal) {
+        long now = System.currentTimeMillis();
+        if (lastWriteAt.size() >= MAX_TRACKED_WRITERS) {
+            lastWriteAt.values().removeIf(at -> now - at >= readYourWritesMillis);
+        }
+        lastWriteAt.put(principal, now);
+    }
+
+    private boolean recentlyWrote(String principal) {
+        Long at = lastWriteAt.get(principal);
+        if (at == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - at < readYourWritesMillis) {
+            return true;
+        }
+        lastWriteAt.remove(principal, at);
+        return false;
+    }
+
+    private static String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
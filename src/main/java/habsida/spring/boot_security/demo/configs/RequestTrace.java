@@ -0,0 +1,216 @@
+package habsida.spring.boot_security.demo.configs;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Timings of one request, collected on the request thread: per phase the
+ * number of calls and the time spent in the outermost ones, and for sampled
+ * requests every span with what it was (service method, SQL text, view).
+ * Instrumented code calls begin/end unconditionally; when no trace is active
+ * on the thread that costs a ThreadLocal lookup.
+ */
+public final class RequestTrace {
+
+    public enum Phase {
+        QUEUE("queue"),
+        SERVICE("service"),
+        REPOSITORY("repository"),
+        SQL("sql"),
+        RENDER("render"),
+        SERIALIZE("serialize");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final int MAX_SPANS = 1000;
+    private static final int MAX_SQL_CHARS = 2000;
+
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private final String id;
+    private final long[] nanos = new long[Phase.values().length];
+    private final int[] counts = new int[Phase.values().length];
+    private final int[] depth = new int[Phase.values().length];
+    private final List<Span> spans;
+    private int droppedSpans;
+    private long securityPassedNanos;
+    private boolean admin;
+    private String pendingSql;
+
+    private RequestTrace(boolean sampled) {
+        this.id = sampled ? Long.toHexString(ThreadLocalRandom.current().nextLong()) : null;
+        this.spans = sampled ? new ArrayList<>() : null;
+    }
+
+    static RequestTrace start(boolean sampled) {
+        RequestTrace trace = new RequestTrace(sampled);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+
+    public static long begin(Phase phase) {
+        RequestTrace trace = CURRENT.get();
+        if (trace == null) {
+            return 0;
+        }
+        trace.depth[phase.ordinal()]++;
+        return System.nanoTime();
+    }
+
+    public static void end(Phase phase, long begun) {
+        end(phase, begun, null);
+    }
+
+    // The detail is only asked for when the request is sampled
+    public static void end(Phase phase, long begun, Supplier<String> detail) {
+        if (begun == 0) {
+            return;
+        }
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.exit(phase, begun, System.nanoTime(), detail);
+        }
+    }
+
+    // SQL text of the statement about to run, from the Hibernate statement inspector
+    static void statement(String sql) {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null && trace.spans != null) {
+            trace.pendingSql = sql.length() > MAX_SQL_CHARS ? sql.substring(0, MAX_SQL_CHARS) : sql;
+        }
+    }
+
+    static void securityPassed(boolean admin) {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null && trace.securityPassedNanos == 0) {
+            trace.securityPassedNanos = System.nanoTime();
+            trace.admin = admin;
+        }
+    }
+
+    private void exit(Phase phase, long begun, long now, Supplier<String> detail) {
+        int i = phase.ordinal();
+        // Nested calls of the same phase are already inside the outermost one
+        if (--depth[i] > 0) {
+            return;
+        }
+        nanos[i] += now - begun;
+        counts[i]++;
+        if (spans == null) {
+            return;
+        }
+        if (spans.size() >= MAX_SPANS) {
+            droppedSpans++;
+            return;
+        }
+        String what = phase == Phase.SQL ? pendingSql : detail != null ? detail.get() : null;
+        spans.add(new Span(phase.label, what, millis(begun - startNanos), millis(now - begun)));
+    }
+
+    boolean isSampled() {
+        return spans != null;
+    }
+
+    boolean isAdmin() {
+        return admin;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    // Everything up to the security filter chain handing over, less the bulkhead wait
+    private long securityNanos(long now) {
+        long passed = securityPassedNanos != 0 ? securityPassedNanos : now;
+        return Math.max(0, passed - startNanos - nanos[Phase.QUEUE.ordinal()]);
+    }
+
+    String serverTiming() {
+        long now = System.nanoTime();
+        StringBuilder header = new StringBuilder(160);
+        appendTiming(header, "security", securityNanos(now), 0);
+        for (Phase phase : Phase.values()) {
+            if (counts[phase.ordinal()] > 0) {
+                appendTiming(header, phase.label, nanos[phase.ordinal()], counts[phase.ordinal()]);
+            }
+        }
+        appendTiming(header, "total", now - startNanos, 0);
+        return header.toString();
+    }
+
+    private static void appendTiming(StringBuilder header, String name, long nanos, int count) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", millis(nanos)));
+        if (count > 0) {
+            header.append(";desc=\"").append(count).append(count == 1 ? " call\"" : " calls\"");
+        }
+    }
+
+    Snapshot snapshot(String method, String uri, int status) {
+        long now = System.nanoTime();
+        Map<String, PhaseTotal> phases = new LinkedHashMap<>();
+        phases.put("security", new PhaseTotal(0, millis(securityNanos(now))));
+        for (Phase phase : Phase.values()) {
+            int i = phase.ordinal();
+            if (counts[i] > 0) {
+                phases.put(phase.label, new PhaseTotal(counts[i], millis(nanos[i])));
+            }
+        }
+        return new Snapshot(id, startMillis, method, uri, status, millis(now - startNanos),
+                phases, spans == null ? List.of() : List.copyOf(spans), droppedSpans);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final String id;
+        private final long timestamp;
+        private final String method;
+        private final String uri;
+        private final int status;
+        private final double totalMillis;
+        private final Map<String, PhaseTotal> phases;
+        private final List<Span> spans;
+        private final int droppedSpans;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class PhaseTotal {
+        private final int count;
+        private final double millis;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Span {
+        private final String phase;
+        private final String detail;
+        private final double startMillis;
+        private final double millis;
+    }
+}
@@ -0,0 +1,137 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts a RequestTrace for each request and reports it: a Server-Timing
+ * header with the per-phase breakdown and, for sampled requests, an
+ * X-Trace-Id header naming the full trace kept in the RequestTraceStore.
+ * The body is buffered until the request completes so that rendering and
+ * serialization are part of the header; redirects and errors get the
+ * timings collected up to that point. X-Debug-Trace forces sampling for
+ * admins only: anyone else's forced trace is discarded rather than stored,
+ * so it cannot push real samples out of the store.
+ */
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    public static final String DEBUG_HEADER = "X-Debug-Trace";
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private static final String[] UNTRACED_PREFIXES = {"/css/", "/js/", "/vendor/", "/api/admin/traces"};
+
+    private final RequestTraceStore store;
+    private final double sampleRate;
+    private final boolean adminsOnly;
+
+    public RequestTraceFilter(RequestTraceStore store, double sampleRate, boolean adminsOnly) {
+        this.store = store;
+        this.sampleRate = sampleRate;
+        this.adminsOnly = adminsOnly;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        for (String prefix : UNTRACED_PREFIXES) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        // Whether the caller is an admin is only known once security has run, so trace now and decide then
+        boolean forced = request.getHeader(DEBUG_HEADER) != null;
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        RequestTrace trace = RequestTrace.start(sampled || forced);
+        TracingResponse tracingResponse = new TracingResponse(response, trace, sampled);
+        try {
+            filterChain.doFilter(request, tracingResponse);
+        } finally {
+            RequestTrace.stop();
+            tracingResponse.writeTraceHeaders();
+            tracingResponse.copyBodyToResponse();
+            if (tracingResponse.isKept()) {
+                store.add(trace.snapshot(request.getMethod(), request.getRequestURI(), response.getStatus()));
+            }
+        }
+    }
+
+    private class TracingResponse extends ContentCachingResponseWrapper {
+
+        private final RequestTrace trace;
+        private final boolean sampled;
+        private boolean headersWritten;
+
+        TracingResponse(HttpServletResponse response, RequestTrace trace, boolean sampled) {
+            super(response);
+            this.trace = trace;
+            this.sampled = sampled;
+        }
+
+        // Randomly sampled, or forced by an admin
+        boolean isKept() {
+            return trace.isSampled() && (sampled || trace.isAdmin());
+        }
+
+        void writeTraceHeaders() {
+            if (headersWritten || isCommitted()) {
+                return;
+            }
+            headersWritten = true;
+            if (adminsOnly && !trace.isAdmin()) {
+                return;
+            }
+            setHeader("Server-Timing", trace.serverTiming());
+            if (isKept()) {
+                setHeader(TRACE_ID_HEADER, trace.getId());
+            }
+        }
+
+        // These commit the response right away, so report what has been measured so far
+        @Override
+        public void sendError(int status) throws IOException {
+            writeTraceHeaders();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            writeTraceHeaders();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeTraceHeaders();
+            super.sendRedirect(location);
+        }
+    }
+
+    /**
+     * Placed right behind the Spring Security filter chain: marks where
+     * security hands over to the application and whether the caller is an admin.
+     */
+    public static class SecurityPassed extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            RequestTrace.securityPassed(request.isUserInRole("ADMIN"));
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package habsida.spring.boot_security.demo.configs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The most recent sampled request traces, oldest dropped first.
+ */
+public class RequestTraceStore {
+
+    private final int capacity;
+    private final ArrayDeque<RequestTrace.Snapshot> traces;
+
+    public RequestTraceStore(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.traces = new ArrayDeque<>(this.capacity);
+    }
+
+    synchronized void add(RequestTrace.Snapshot trace) {
+        if (traces.size() == capacity) {
+            traces.removeFirst();
+        }
+        traces.addLast(trace);
+    }
+
+    // Newest first
+    public synchronized List<RequestTrace.Snapshot> recent(int limit) {
+        List<RequestTrace.Snapshot> recent = new ArrayList<>(Math.min(limit, traces.size()));
+        Iterator<RequestTrace.Snapshot> newestFirst = traces.descendingIterator();
+        while (newestFirst.hasNext() && recent.size() < limit) {
+            recent.add(newestFirst.next());
+        }
+        return recent;
+    }
+
+    public synchronized Optional<RequestTrace.Snapshot> find(String id) {
+        return traces.stream().filter(trace -> trace.getId().equals(id)).findFirst();
+    }
+}
@@ -0,0 +1,69 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+
+/**
+ * In-process Ehcache (JCache) regions backing Hibernate's second-level and
+ * query caches. Each region gets its own entry limit and time-to-live from
+ * app.cache.*; Hibernate invalidates entries on every write through the
+ * EntityManager, so the TTL only bounds staleness against writes made outside
+ * the application.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${app.cache.role.max-entries:256}") long roleEntries,
+            @Value("${app.cache.role.ttl-seconds:3600}") long roleTtl,
+            @Value("${app.cache.user.max-entries:10000}") long userEntries,
+            @Value("${app.cache.user.ttl-seconds:600}") long userTtl,
+            @Value("${app.cache.user-roles.max-entries:10000}") long userRolesEntries,
+            @Value("${app.cache.user-roles.ttl-seconds:600}") long userRolesTtl,
+            @Value("${app.cache.query.max-entries:2048}") long queryEntries,
+            @Value("${app.cache.query.ttl-seconds:300}") long queryTtl) {
+        // A provider of our own rather than the Caching registry, so each context gets fresh regions
+        EhcacheCachingProvider provider = new EhcacheCachingProvider();
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), ConfigurationBuilder.newConfigurationBuilder().build());
+        createRegion(cacheManager, Role.class.getName(), roleEntries, roleTtl);
+        createRegion(cacheManager, User.class.getName(), userEntries, userTtl);
+        createRegion(cacheManager, User.class.getName() + ".roles", userRolesEntries, userRolesTtl);
+        createRegion(cacheManager, QUERY_RESULTS_REGION, queryEntries, queryTtl);
+        // One entry per table; must never expire before the query results it guards
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                ResourcePoolsBuilder.heap(64))
+                        .withExpiry(ExpiryPolicyBuilder.noExpiration())));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String region, long maxEntries, long ttlSeconds) {
+        cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                ResourcePoolsBuilder.heap(maxEntries))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ttlSeconds)))));
+    }
+}
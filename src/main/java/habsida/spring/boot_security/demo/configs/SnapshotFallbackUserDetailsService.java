@@ -0,0 +1,55 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.SessionUser;
+import habsida.spring.boot_security.demo.service.CredentialSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.TransactionException;
+
+import java.util.Optional;
+
+/**
+ * Looks users up in the database and, when that fails (a DataAccessException,
+ * or a transaction that could not begin because no connection was available),
+ * in the CredentialSnapshot, so logins keep working while the database is
+ * down. The database stays authoritative: a user it reports missing is not
+ * looked up in the snapshot.
+ */
+public class SnapshotFallbackUserDetailsService implements UserDetailsService {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotFallbackUserDetailsService.class);
+
+    private final UserDetailsService delegate;
+    private final CredentialSnapshot snapshot;
+    private final MeterRegistry meterRegistry;
+
+    public SnapshotFallbackUserDetailsService(UserDetailsService delegate,
+                                              CredentialSnapshot snapshot,
+                                              MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.snapshot = snapshot;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        try {
+            return delegate.loadUserByUsername(email);
+        } catch (DataAccessException | TransactionException e) {
+            Optional<SessionUser> user = snapshot.find(email);
+            meterRegistry.counter("auth.credential.snapshot.fallbacks", "result", user.isPresent() ? "found" : "not_found")
+                    .increment();
+            if (user.isEmpty()) {
+                throw e;
+            }
+            log.warn("User lookup failed ({}); authenticating {} from the credential snapshot, {} s old",
+                    e.getClass().getSimpleName(), email, Math.round(snapshot.ageSeconds()));
+            return user.get();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Times every JDBC execution Hibernate makes into the SQL phase of the current
+ * RequestTrace. Hibernate creates one listener per session (so per thread);
+ * the statement inspector supplies the SQL text for sampled traces.
+ */
+public class SqlTraceListener implements SessionEventListener {
+
+    static final StatementInspector STATEMENT_INSPECTOR = sql -> {
+        RequestTrace.statement(sql);
+        return sql;
+    };
+
+    private long begun;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        begun = RequestTrace.begin(RequestTrace.Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestTrace.end(RequestTrace.Phase.SQL, begun);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        begun = RequestTrace.begin(RequestTrace.Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestTrace.end(RequestTrace.Phase.SQL, begun);
+    }
+}
@@ -0,0 +1,74 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationContextInitializedEvent;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.boot.web.servlet.context.ServletWebServerInitializedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records when each startup phase is reached, in milliseconds since the JVM
+ * started, and logs the timeline once the application is ready. Registered on
+ * the SpringApplication in main so it also sees the phases before the context
+ * exists. Per-bean detail is available from the actuator startup endpoint.
+ */
+public class StartupTimeline implements ApplicationListener<ApplicationEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeline.class);
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        String phase = phaseOf(event);
+        if (phase == null) {
+            return;
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        synchronized (phases) {
+            phases.putIfAbsent(phase, uptime);
+        }
+        if (event instanceof ApplicationReadyEvent) {
+            log.info(report());
+        }
+    }
+
+    public Map<String, Long> phases() {
+        synchronized (phases) {
+            return new LinkedHashMap<>(phases);
+        }
+    }
+
+    private String report() {
+        StringBuilder report = new StringBuilder("Startup timeline (ms since JVM start):");
+        long previous = 0;
+        for (Map.Entry<String, Long> phase : phases().entrySet()) {
+            report.append(String.format("%n  %-22s %7d  (+%d)", phase.getKey(), phase.getValue(),
+                    phase.getValue() - previous));
+            previous = phase.getValue();
+        }
+        return report.toString();
+    }
+
+    private static String phaseOf(ApplicationEvent event) {
+        if (event instanceof ApplicationStartingEvent) return "starting";
+        if (event instanceof ApplicationEnvironmentPreparedEvent) return "environment-prepared";
+        if (event instanceof ApplicationContextInitializedEvent) return "context-initialized";
+        if (event instanceof ApplicationPreparedEvent) return "context-prepared";
+        if (event instanceof ServletWebServerInitializedEvent) return "web-server-started";
+        if (event instanceof ApplicationStartedEvent) return "context-refreshed";
+        if (event instanceof ApplicationReadyEvent) return "ready";
+        return null;
+    }
+}
@@ -12,12 +12,20 @@ import java.util.Collection;
 import java.util.Set;
 
 public class SuccessUserHandler implements AuthenticationSuccessHandler {
+
+    private final LoginThrottle loginThrottle;
+
+    public SuccessUserHandler(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request,
                                         HttpServletResponse response,
                                         Authentication authentication)
             throws IOException, ServletException {
 
+        loginThrottle.recordSuccess(authentication.getName());
         Set<String> roles = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
 
         if (roles.contains("ROLE_ADMIN")){
@@ -0,0 +1,71 @@
+package habsida.spring.boot_security.demo.configs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Tokens and the last refill time share one AtomicLong
+ * (tokens in the low 16 bits) so a take is a single CAS. Failures reported by
+ * the authentication path add an exponential block on top of the rate limit.
+ */
+class TokenBucket {
+
+    private static final int TOKEN_BITS = 16;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+
+    private final AtomicLong state;
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long blockedUntil;
+    private volatile long lastSeen;
+
+    TokenBucket(int capacity, long now) {
+        this.state = new AtomicLong((now << TOKEN_BITS) | capacity);
+        this.lastSeen = now;
+    }
+
+    // Returns 0 when a token was taken, otherwise the milliseconds to wait
+    long tryTake(long now, int capacity, long refillMillis) {
+        lastSeen = now;
+        long blocked = blockedUntil - now;
+        if (blocked > 0) {
+            return blocked;
+        }
+        while (true) {
+            long current = state.get();
+            long lastRefill = current >>> TOKEN_BITS;
+            int tokens = (int) (current & TOKEN_MASK);
+
+            long refilled = (now - lastRefill) / refillMillis;
+            if (refilled > 0) {
+                tokens = (int) Math.min(capacity, tokens + refilled);
+                lastRefill = tokens == capacity ? now : lastRefill + refilled * refillMillis;
+            }
+            if (tokens == 0) {
+                return Math.max(1, refillMillis - (now - lastRefill));
+            }
+            long next = (lastRefill << TOKEN_BITS) | (tokens - 1);
+            if (state.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    void recordFailure(long now, int freeFailures, long baseBackoffMillis, long maxBackoffMillis) {
+        lastSeen = now;
+        int count = failures.incrementAndGet();
+        if (count > freeFailures) {
+            int exponent = Math.min(count - freeFailures - 1, 30);
+            long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << exponent);
+            blockedUntil = now + backoff;
+        }
+    }
+
+    void reset() {
+        failures.set(0);
+        blockedUntil = 0;
+    }
+
+    boolean isIdle(long now, long idleMillis) {
+        return now - lastSeen > idleMillis && now >= blockedUntil;
+    }
+}
@@ -0,0 +1,91 @@
+package habsida.spring.boot_security.demo.configs;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token buckets split over independent stripes, each with a hard entry limit.
+ * When a stripe is full and nothing in it is idle, new keys share the stripe's
+ * overflow bucket, so flooding with random keys cannot grow memory or bypass
+ * the limit.
+ */
+class TokenBucketTable {
+
+    private final ConcurrentHashMap<String, TokenBucket>[] stripes;
+    private final TokenBucket[] overflow;
+    private final AtomicInteger[] sizes;
+    private final int maxPerStripe;
+    private final long idleMillis;
+
+    @SuppressWarnings("unchecked")
+    TokenBucketTable(int stripeCount, int maxEntries, int capacity, long idleMillis) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ConcurrentHashMap[count];
+        this.overflow = new TokenBucket[count];
+        this.sizes = new AtomicInteger[count];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+            overflow[i] = new TokenBucket(capacity, now);
+            sizes[i] = new AtomicInteger();
+        }
+        this.maxPerStripe = Math.max(1, maxEntries / count);
+        this.idleMillis = idleMillis;
+    }
+
+    TokenBucket bucket(String key, int capacity, long now) {
+        int index = stripeOf(key);
+        ConcurrentHashMap<String, TokenBucket> stripe = stripes[index];
+        TokenBucket bucket = stripe.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (sizes[index].get() >= maxPerStripe) {
+            evictIdle(index, now);
+            if (sizes[index].get() >= maxPerStripe) {
+                return overflow[index];
+            }
+        }
+        TokenBucket created = new TokenBucket(capacity, now);
+        bucket = stripe.putIfAbsent(key, created);
+        if (bucket == null) {
+            sizes[index].incrementAndGet();
+            return created;
+        }
+        return bucket;
+    }
+
+    // Only looks buckets up, never creates them
+    TokenBucket existing(String key) {
+        return stripes[stripeOf(key)].get(key);
+    }
+
+    void evictIdle(long now) {
+        for (int i = 0; i < stripes.length; i++) {
+            evictIdle(i, now);
+        }
+    }
+
+    int size() {
+        int total = 0;
+        for (AtomicInteger size : sizes) {
+            total += size.get();
+        }
+        return total;
+    }
+
+    private void evictIdle(int index, long now) {
+        stripes[index].entrySet().removeIf(entry -> {
+            if (entry.getValue().isIdle(now, idleMillis)) {
+                sizes[index].decrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
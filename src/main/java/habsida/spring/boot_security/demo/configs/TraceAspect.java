@@ -0,0 +1,31 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Service and repository calls as phases of the current RequestTrace.
+ */
+@Aspect
+public class TraceAspect {
+
+    @Around("within(habsida.spring.boot_security.demo.service..*)")
+    public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(RequestTrace.Phase.SERVICE, joinPoint);
+    }
+
+    @Around("target(org.springframework.data.repository.Repository)")
+    public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return trace(RequestTrace.Phase.REPOSITORY, joinPoint);
+    }
+
+    private static Object trace(RequestTrace.Phase phase, ProceedingJoinPoint joinPoint) throws Throwable {
+        long begun = RequestTrace.begin(phase);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            RequestTrace.end(phase, begun, () -> joinPoint.getSignature().toShortString());
+        }
+    }
+}
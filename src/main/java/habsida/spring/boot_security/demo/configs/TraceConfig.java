@@ -0,0 +1,137 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Per-request tracing (see RequestTrace). Nothing here is registered unless
+ * app.trace.enabled is set, so a normal deployment pays only for the
+ * ThreadLocal lookups in the few places that report a phase.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.trace.enabled", havingValue = "true")
+public class TraceConfig implements WebMvcConfigurer {
+
+    private static final String RENDER_BEGUN = TraceConfig.class.getName() + ".renderBegun";
+
+    @Bean
+    public RequestTraceStore requestTraceStore(@Value("${app.trace.keep:200}") int keep) {
+        return new RequestTraceStore(keep);
+    }
+
+    // Outside the bulkhead and Spring Security, so their time is part of the trace
+    @Bean
+    public FilterRegistrationBean<RequestTraceFilter> requestTraceFilter(
+            RequestTraceStore requestTraceStore,
+            @Value("${app.trace.sample-rate:0.01}") double sampleRate,
+            @Value("${app.trace.admins-only:true}") boolean adminsOnly) {
+        FilterRegistrationBean<RequestTraceFilter> registration =
+                new FilterRegistrationBean<>(new RequestTraceFilter(requestTraceStore, sampleRate, adminsOnly));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 2);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestTraceFilter.SecurityPassed> securityPassedTraceFilter() {
+        FilterRegistrationBean<RequestTraceFilter.SecurityPassed> registration =
+                new FilterRegistrationBean<>(new RequestTraceFilter.SecurityPassed());
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    @Bean
+    public TraceAspect traceAspect() {
+        return new TraceAspect();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlTraceCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTraceListener.class.getName());
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, SqlTraceListener.STATEMENT_INSPECTOR);
+        };
+    }
+
+    // Views render between postHandle and afterCompletion
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                if (modelAndView != null && !modelAndView.wasCleared()) {
+                    request.setAttribute(RENDER_BEGUN, RequestTrace.begin(RequestTrace.Phase.RENDER));
+                }
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (request.getAttribute(RENDER_BEGUN) instanceof Long begun) {
+                    request.removeAttribute(RENDER_BEGUN);
+                    RequestTrace.end(RequestTrace.Phase.RENDER, begun, request::getRequestURI);
+                }
+            }
+        });
+    }
+
+    // Swaps the Jackson converters for ones that time writing the body
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter instanceof MappingJackson2HttpMessageConverter json) {
+                MappingJackson2HttpMessageConverter timed = new MappingJackson2HttpMessageConverter(json.getObjectMapper()) {
+                    @Override
+                    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                            throws IOException, HttpMessageNotWritableException {
+                        long begun = RequestTrace.begin(RequestTrace.Phase.SERIALIZE);
+                        try {
+                            super.writeInternal(object, type, outputMessage);
+                        } finally {
+                            RequestTrace.end(RequestTrace.Phase.SERIALIZE, begun, () -> "json");
+                        }
+                    }
+                };
+                timed.setSupportedMediaTypes(json.getSupportedMediaTypes());
+                converters.set(i, timed);
+            } else if (converter instanceof MappingJackson2CborHttpMessageConverter cbor) {
+                MappingJackson2CborHttpMessageConverter timed = new MappingJackson2CborHttpMessageConverter(cbor.getObjectMapper()) {
+                    @Override
+                    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                            throws IOException, HttpMessageNotWritableException {
+                        long begun = RequestTrace.begin(RequestTrace.Phase.SERIALIZE);
+                        try {
+                            super.writeInternal(object, type, outputMessage);
+                        } finally {
+                            RequestTrace.end(RequestTrace.Phase.SERIALIZE, begun, () -> "cbor");
+                        }
+                    }
+                };
+                timed.setSupportedMediaTypes(cbor.getSupportedMediaTypes());
+                converters.set(i, timed);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package habsida.spring.boot_security.demo.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import habsida.spring.boot_security.demo.dto.DataInitializer;
+import habsida.spring.boot_security.demo.dto.RoleResponse;
+import habsida.spring.boot_security.demo.dto.UserResponse;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.RoleService;
+import habsida.spring.boot_security.demo.service.UserServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the code behind /login, /admin and /api/admin/users in-process before
+ * the application reports ready (readiness flips on ApplicationReadyEvent,
+ * which follows the runners), so the JIT, Hibernate's query plan cache,
+ * Jackson's serializers and Thymeleaf's template cache are warm when traffic
+ * arrives. Only synthetic users are rendered and serialized, lookups use an
+ * email that cannot exist, and queries run in read-only transactions, so
+ * nothing is written. Paths take turns until each has had its rounds or the
+ * time budget runs out.
+ */
+@Component
+@Order(DataInitializer.ORDER + 2)
+@ConditionalOnProperty(name = "app.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmUp implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final String ROW_TEMPLATE = "fragments/user-row";
+    // Reserved TLD, so the lookup can never find a real account
+    private static final String UNKNOWN_EMAIL = "warm-up@warm-up.invalid";
+
+    private final UserServiceImpl userService;
+    private final RoleService roleService;
+    private final PasswordEncoder passwordEncoder;
+    private final ITemplateEngine templateEngine;
+    private final HttpMessageConverters messageConverters;
+    private final MeterRegistry meterRegistry;
+    private final long budgetMillis;
+    private final int rounds;
+    private final int bcryptRounds;
+    private final int pageSize;
+
+    public WarmUp(UserServiceImpl userService,
+                  RoleService roleService,
+                  PasswordEncoder passwordEncoder,
+                  ITemplateEngine templateEngine,
+                  HttpMessageConverters messageConverters,
+                  MeterRegistry meterRegistry,
+                  @Value("${app.warm-up.budget-ms:15000}") long budgetMillis,
+                  @Value("${app.warm-up.rounds:500}") int rounds,
+                  @Value("${app.warm-up.bcrypt-rounds:10}") int bcryptRounds,
+                  @Value("${app.warm-up.page-size:100}") int pageSize) {
+        this.userService = userService;
+        this.roleService = roleService;
+        this.passwordEncoder = passwordEncoder;
+        this.templateEngine = templateEngine;
+        this.messageConverters = messageConverters;
+        this.meterRegistry = meterRegistry;
+        this.budgetMillis = budgetMillis;
+        this.rounds = rounds;
+        this.bcryptRounds = bcryptRounds;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void run(String... args) {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        List<Path> paths = paths();
+
+        boolean pending = true;
+        while (pending && System.nanoTime() < deadline) {
+            pending = false;
+            for (Path path : paths) {
+                if (path.done < path.rounds && System.nanoTime() < deadline) {
+                    path.runOnce();
+                    pending |= path.done < path.rounds;
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        String result = pending ? "budget_exhausted" : "completed";
+        Timer.builder("startup.warmup").tag("result", result).register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Warm-up {} in {} ms (budget {} ms): {}", result.replace('_', ' '),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), budgetMillis,
+                paths.stream().map(Path::toString).collect(Collectors.joining(", ")));
+    }
+
+    private List<Path> paths() {
+        List<User> users = syntheticUsers();
+        List<UserResponse> responses = users.stream().map(UserResponse::from).toList();
+        List<RoleResponse> roles = roleService.findAll().stream().map(RoleResponse::from).toList();
+        String hash = passwordEncoder.encode("warm-up-password");
+
+        List<Path> paths = new ArrayList<>();
+        // GET /admin and GET /api/admin/users?page=: the paged read, the current-user lookup and roles
+        paths.add(new Path("queries", rounds / 10, () -> {
+            userService.findPageWithRoles(0, pageSize);
+            userService.findByEmail(UNKNOWN_EMAIL);
+            roleService.findAll();
+        }));
+        // Admin table rows, as UserRowCache renders them
+        Context context = new Context(Locale.getDefault());
+        paths.add(new Path("thymeleaf", rounds, () -> {
+            for (User user : users) {
+                context.setVariable("user", user);
+                templateEngine.process(ROW_TEMPLATE, context);
+            }
+        }));
+        // Response bodies and request bodies through every Jackson converter MVC uses (JSON, CBOR)
+        List<ObjectMapper> mappers = messageConverters.getConverters().stream()
+                .filter(AbstractJackson2HttpMessageConverter.class::isInstance)
+                .map(converter -> ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper())
+                .distinct()
+                .toList();
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("firstName", "Warm");
+        requestBody.put("lastName", "Up");
+        requestBody.put("age", 30);
+        requestBody.put("email", UNKNOWN_EMAIL);
+        requestBody.put("password", "warm-up-password");
+        requestBody.put("roles", List.of(Map.of("id", 1, "name", "USER")));
+        paths.add(new Path("jackson", rounds, () -> {
+            for (ObjectMapper mapper : mappers) {
+                mapper.writeValueAsBytes(responses);
+                mapper.writeValueAsBytes(roles);
+                mapper.readValue(mapper.writeValueAsBytes(requestBody), User.class);
+            }
+        }));
+        // POST /login: user lookup plus one BCrypt check; last, as it is by far the slowest
+        paths.add(new Path("login", bcryptRounds, () -> {
+            try {
+                userService.loadUserByUsername(UNKNOWN_EMAIL);
+            } catch (UsernameNotFoundException expected) {
+                // the lookup is what is being warmed
+            }
+            passwordEncoder.matches("warm-up-password", hash);
+        }));
+        return paths;
+    }
+
+    private List<User> syntheticUsers() {
+        Role admin = Role.builder().id(-1L).name("ADMIN").build();
+        Role user = Role.builder().id(-2L).name("USER").build();
+        List<User> users = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            User synthetic = new User();
+            synthetic.setId((long) -(i + 1));
+            synthetic.setFirstName("Warm" + i);
+            synthetic.setLastName("Up" + i);
+            synthetic.setAge(20 + i % 60);
+            synthetic.setEmail("warm-up-" + i + "@warm-up.invalid");
+            synthetic.setActive(true);
+            synthetic.setUpdatedAt(LocalDateTime.now());
+            synthetic.setRoles(i % 10 == 0 ? Set.of(admin, user) : Set.of(user));
+            users.add(synthetic);
+        }
+        return users;
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private static final class Path {
+
+        private final String name;
+        private final Step step;
+        private int rounds;
+        private int done;
+        private long nanos;
+
+        Path(String name, int rounds, Step step) {
+            this.name = name;
+            this.rounds = rounds;
+            this.step = step;
+        }
+
+        void runOnce() {
+            long begun = System.nanoTime();
+            try {
+                step.run();
+                done++;
+            } catch (Exception e) {
+                // A broken path must not hold up startup; drop it
+                log.warn("Warm-up path {} failed, skipping it: {}", name, e.toString());
+                rounds = done;
+            }
+            nanos += System.nanoTime() - begun;
+        }
+
+        @Override
+        public String toString() {
+            return name + " x" + done + " (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms)";
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package habsida.spring.boot_security.demo.configs;
 
+import habsida.spring.boot_security.demo.service.CredentialSnapshot;
 import habsida.spring.boot_security.demo.service.UserServiceImpl;
+import habsida.spring.boot_security.demo.service.VerifiedCredentialCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -13,7 +18,15 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import static habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager.Access.hasAnyRole;
+import static habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager.Access.hasRole;
+import static habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager.Access.permitAll;
 
 @Configuration
 @EnableWebSecurity
@@ -25,20 +38,46 @@ public class WebSecurityConfig {
     @Autowired
     private  PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private  LoginThrottle loginThrottle;
+
+    @Autowired
+    private  VerifiedCredentialCache verifiedCredentialCache;
+
+    @Autowired
+    private  CredentialSnapshot credentialSnapshot;
+
+    @Autowired
+    private  MeterRegistry meterRegistry;
+
+    // /api/** also accepts HTTP Basic, for machine clients; browsers keep using the login session.
+    // Its own manager, so a failed Basic check is not retried against the global provider.
+    // An explicit ant matcher: a String pattern needs Spring MVC's introspector, absent from the
+    // datagen profile, which runs without a web server.
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher(AntPathRequestMatcher.antMatcher("/api/**"))
+                .authenticationManager(new ProviderManager(new CachingBasicAuthenticationProvider(
+                        daoAuthenticationProvider(), verifiedCredentialCache, loginThrottle)))
+                .authorizeHttpRequests(auth -> auth.anyRequest().access(authorizationRules()))
+                .csrf(csrf -> csrf.disable())
+                .httpBasic(basic -> basic.realmName("api"))
+                // Without credentials, redirect to the login form as before; wrong credentials get 401
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new LoginUrlAuthenticationEntryPoint("/login")));
+
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .authenticationProvider(daoAuthenticationProvider())
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(HttpMethod.GET, "/api/admin/**").hasRole("ADMIN")
-                        .requestMatchers(HttpMethod.POST, "/api/admin/**").hasRole("ADMIN")
-                        .requestMatchers(HttpMethod.PUT, "/api/admin/**").hasRole("ADMIN")
-                        .requestMatchers(HttpMethod.DELETE, "/api/admin/**").hasRole("ADMIN")
-                        .requestMatchers("/admin/**").hasRole("ADMIN")
-                        .requestMatchers("/user/**").hasAnyRole("USER", "ADMIN")
-                        .requestMatchers("/api/users/**").hasAnyRole("USER", "ADMIN")
-                        .anyRequest().permitAll()
-                )
+                .addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class)
+                .authorizeHttpRequests(auth -> auth.anyRequest().access(authorizationRules()))
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers("/api/**")  // disable CSRF for API calls
                         .disable()
@@ -46,7 +85,7 @@ public class WebSecurityConfig {
                 .formLogin(form -> form
                         .loginPage("/login")
                         .successHandler(successUserHandler())
-                        .failureUrl("/login?error")
+                        .failureHandler(loginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -57,21 +96,47 @@ public class WebSecurityConfig {
 
         return http.build();
     }
+    // URL rules, first match wins; compiled into a per-method path trie
+    public static CompiledAuthorizationManager authorizationRules() {
+        return CompiledAuthorizationManager.builder()
+                .rule("/api/admin/**", hasRole("ADMIN"), HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE)
+                .rule("/admin/**", hasRole("ADMIN"))
+                .rule("/user/**", hasAnyRole("USER", "ADMIN"))
+                .rule("/api/users/**", hasAnyRole("USER", "ADMIN"))
+                .rule("/actuator/health/**", permitAll())
+                .rule("/actuator/**", hasRole("ADMIN"))
+                .build(permitAll());
+    }
+
     @Bean
     public DaoAuthenticationProvider daoAuthenticationProvider(){
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userServiceImpl);
+        // Falls back to the on-disk credential snapshot when the database is unreachable
+        authProvider.setUserDetailsService(
+                new SnapshotFallbackUserDetailsService(userServiceImpl, credentialSnapshot, meterRegistry));
         authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
     public WebSecurityConfig(UserServiceImpl userServiceImpl,
-                             PasswordEncoder passwordEncoder) {
+                             PasswordEncoder passwordEncoder,
+                             LoginThrottle loginThrottle,
+                             VerifiedCredentialCache verifiedCredentialCache,
+                             CredentialSnapshot credentialSnapshot,
+                             MeterRegistry meterRegistry) {
         this.userServiceImpl = userServiceImpl;
         this.passwordEncoder = passwordEncoder;
+        this.loginThrottle = loginThrottle;
+        this.verifiedCredentialCache = verifiedCredentialCache;
+        this.credentialSnapshot = credentialSnapshot;
+        this.meterRegistry = meterRegistry;
 
     }
     @Bean
     public AuthenticationSuccessHandler successUserHandler() {
-        return new SuccessUserHandler();  // Ensure this class exists or implement custom handler
+        return new SuccessUserHandler(loginThrottle);  // Ensure this class exists or implement custom handler
+    }
+    @Bean
+    public AuthenticationFailureHandler loginFailureHandler() {
+        return new LoginFailureHandler(loginThrottle);
     }
 }
@@ -1,10 +1,12 @@
 package habsida.spring.boot_security.demo.controller;
 
+import habsida.spring.boot_security.demo.audit.AuditService;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
 import habsida.spring.boot_security.demo.service.RoleService;
 import habsida.spring.boot_security.demo.service.UserServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -15,6 +17,8 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.util.List;
 import java.util.Set;
@@ -23,21 +27,32 @@ import java.util.stream.Collectors;
 @Controller
 public class AdminController {
 
+    private static final int FIRST_PAGE_SIZE = 100;
+
     private final UserServiceImpl userService;
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
+    private final AuditService auditService;
+    private final UserRowCache userRowCache;
 
     @Autowired
-    public AdminController(UserServiceImpl userService, RoleService roleService, PasswordEncoder passwordEncoder) {
+    public AdminController(UserServiceImpl userService, RoleService roleService, PasswordEncoder passwordEncoder,
+                           AuditService auditService, UserRowCache userRowCache) {
         this.userService = userService;
         this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
+        this.auditService = auditService;
+        this.userRowCache = userRowCache;
     }
 
     @GetMapping("/admin")
-    public String adminPage(Model model, @AuthenticationPrincipal UserDetails loggedInUser) {
-        List<User> users = userService.findAllWithRoles();
-        model.addAttribute("users", users);
+    public String adminPage(Model model, @AuthenticationPrincipal UserDetails loggedInUser,
+                            HttpServletRequest request, HttpServletResponse response) {
+        // Only the first page is rendered here; admin.js pages in the rest over /api/admin/users
+        Page<User> firstPage = userService.findPageWithRoles(0, FIRST_PAGE_SIZE);
+        model.addAttribute("userRows", userRowCache.render(firstPage.getContent(), request, response));
+        model.addAttribute("totalUsers", firstPage.getTotalElements());
+        model.addAttribute("pageSize", FIRST_PAGE_SIZE);
         String email = loggedInUser.getUsername();
         User currentUser = userService.findByEmail(email).orElse(null);
         model.addAttribute("loggedInUser", currentUser);
@@ -60,6 +75,7 @@ public class AdminController {
             user.setUsername(user.getEmail());
         }
         userService.saveUser(user);
+        auditService.record("USER_CREATE", "user:" + user.getId(), user.getEmail());
         redirectAttributes.addFlashAttribute("addSuccess", "User added successfully!");
         return "redirect:/admin";
     }
@@ -77,6 +93,8 @@ public class AdminController {
     @PostMapping("/admin/delete/{id}")
     public String deleteUser(@PathVariable Long id, RedirectAttributes redirectAttributes) {
         userService.deleteUser(id);
+        userRowCache.evict(id);
+        auditService.record("USER_DELETE", "user:" + id, null);
         redirectAttributes.addFlashAttribute("deleteSuccess", "User deleted successfully!");
         return "redirect:/admin";
     }
@@ -120,6 +138,7 @@ public class AdminController {
 
             // Save the updated user
             userService.saveUser(user);
+            auditService.record("USER_UPDATE", "user:" + id, email);
 
             if (SecurityContextHolder.getContext().getAuthentication().getName().equals(email)) {
                 SecurityContextHolder.clearContext();
@@ -1,14 +1,23 @@
 package habsida.spring.boot_security.demo.controller;
 
+import habsida.spring.boot_security.demo.audit.AuditService;
+import habsida.spring.boot_security.demo.dto.RoleResponse;
+import habsida.spring.boot_security.demo.dto.UserResponse;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.RoleMembershipIndex;
 import habsida.spring.boot_security.demo.service.RoleService;
 import habsida.spring.boot_security.demo.service.UserServiceImpl;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -17,39 +26,76 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/admin")
 public class AdminRestController {
 
+    static final int MAX_PAGE_SIZE = 500;
+    static final int MAX_MEMBERS_PAGE = 10_000;
+
     private final UserServiceImpl userService;
     private final RoleService roleService;
+    private final AuditService auditService;
+    private final UserRowCache userRowCache;
+    private final RoleMembershipIndex roleMembershipIndex;
 
     @Autowired
-    public AdminRestController(UserServiceImpl userService, RoleService roleService) {
+    public AdminRestController(UserServiceImpl userService, RoleService roleService, AuditService auditService,
+                               UserRowCache userRowCache, RoleMembershipIndex roleMembershipIndex) {
         this.userService = userService;
         this.roleService = roleService;
+        this.auditService = auditService;
+        this.userRowCache = userRowCache;
+        this.roleMembershipIndex = roleMembershipIndex;
     }
 
-    //  Get all users
+    //  Get all users, or one page of them (ordered by id) when page is given
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(userService.findAllWithRoles());
+    public ResponseEntity<List<UserResponse>> getAllUsers(@RequestParam(required = false) Integer page,
+                                                          @RequestParam(defaultValue = "100") int size) {
+        if (page == null) {
+            return ResponseEntity.ok(userService.findAllWithRoles().stream().map(UserResponse::from).toList());
+        }
+        Page<User> users = userService.findPageWithRoles(Math.max(0, page), Math.min(Math.max(1, size), MAX_PAGE_SIZE));
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(users.getTotalElements()))
+                .body(users.map(UserResponse::from).getContent());
+    }
+
+    //  Whether an email is still free; answered from the email filter when it can be
+    @GetMapping("/users/email-available")
+    public ResponseEntity<Map<String, Object>> isEmailAvailable(@RequestParam String email) {
+        if (email.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Map.of("email", email, "available", userService.isEmailAvailable(email)));
     }
 
     //  Get user by ID
     @GetMapping("/users/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<UserResponse> getUserById(@PathVariable Long id) {
         return userService.findById(id)
-                .map(ResponseEntity::ok)
+                .map(user -> ResponseEntity.ok(UserResponse.from(user)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
     //  Create a new user
     @PostMapping("/users")
-    public ResponseEntity<User> createUser(@RequestBody User user) {
-        userService.saveUser(user);
-        return ResponseEntity.ok(user);
+    public ResponseEntity<?> createUser(@RequestBody User user) {
+        if (user.getEmail() != null && !userService.isEmailAvailable(user.getEmail())) {
+            return emailTaken(user.getEmail());
+        }
+        try {
+            userService.saveUser(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!emailConflict(e, user.getEmail(), null)) {
+                throw e;
+            }
+            return emailTaken(user.getEmail());
+        }
+        auditService.record("USER_CREATE", "user:" + user.getId(), user.getEmail());
+        return ResponseEntity.ok(UserResponse.from(user));
     }
 
     //  Update user
     @PutMapping("/users/{id}")
-    public ResponseEntity<User> updateUser(
+    public ResponseEntity<?> updateUser(
             @PathVariable Long id,
             @RequestBody User userRequest
     ) {
@@ -59,6 +105,10 @@ public class AdminRestController {
         }
 
         User user = optionalUser.get();
+        if (userRequest.getEmail() != null && !sameEmail(userRequest.getEmail(), user.getEmail())
+                && !userService.isEmailAvailable(userRequest.getEmail(), id)) {
+            return emailTaken(userRequest.getEmail());
+        }
         user.setFirstName(userRequest.getFirstName());
         user.setLastName(userRequest.getLastName());
         user.setAge(userRequest.getAge());
@@ -77,20 +127,84 @@ public class AdminRestController {
             user.setRoles(updatedRoles);
         }
 
-        userService.saveUser(user);
-        return ResponseEntity.ok(user);
+        try {
+            userService.saveUser(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!emailConflict(e, user.getEmail(), id)) {
+                throw e;
+            }
+            return emailTaken(user.getEmail());
+        }
+        auditService.record("USER_UPDATE", "user:" + id, user.getEmail());
+        return ResponseEntity.ok(UserResponse.from(user));
     }
 
     //  Delete user
     @DeleteMapping("/users/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
         userService.deleteUser(id);
+        userRowCache.evict(id);
+        auditService.record("USER_DELETE", "user:" + id, null);
         return ResponseEntity.noContent().build();
     }
 
+    //  Ids of a role's members, optionally combined with other roles: (id OR or...) AND and... minus not...,
+    //  filtered by active; pages by user id, pass nextCursor back as after
+    @GetMapping("/roles/{id}/members")
+    public ResponseEntity<?> getRoleMembers(@PathVariable Long id,
+                                            @RequestParam(required = false) List<Long> or,
+                                            @RequestParam(required = false) List<Long> and,
+                                            @RequestParam(required = false) List<Long> not,
+                                            @RequestParam(required = false) Boolean active,
+                                            @RequestParam(defaultValue = "-1") long after,
+                                            @RequestParam(defaultValue = "1000") int limit) {
+        if (roleService.findById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Long> anyOf = or == null ? List.of() : or;
+        List<Long> allOf = and == null ? List.of() : and;
+        List<Long> noneOf = not == null ? List.of() : not;
+        for (List<Long> roleIds : List.of(anyOf, allOf, noneOf)) {
+            for (Long roleId : roleIds) {
+                if (roleService.findById(roleId).isEmpty()) {
+                    return ResponseEntity.badRequest().body("Unknown role id " + roleId);
+                }
+            }
+        }
+        if (!roleMembershipIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+        }
+        return ResponseEntity.ok(roleMembershipIndex.members(id, anyOf, allOf, noneOf, active, after,
+                Math.min(Math.max(1, limit), MAX_MEMBERS_PAGE)));
+    }
+
+    // Two writers can both pass the availability check, and the unique constraint decides. Only a unique
+    // key violation with another user now holding the email is a conflict; FK, NOT NULL and the rest are not
+    private boolean emailConflict(DataIntegrityViolationException e, String email, Long id) {
+        if (email == null) {
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation
+                    && violation.getKind() != ConstraintViolationException.ConstraintKind.UNIQUE
+                    && violation.getKind() != ConstraintViolationException.ConstraintKind.OTHER) {
+                return false;
+            }
+        }
+        return userService.isEmailTakenByOther(email, id);
+    }
+
+    private static boolean sameEmail(String a, String b) {
+        return b != null && a.trim().equalsIgnoreCase(b.trim());
+    }
+
+    private static ResponseEntity<String> emailTaken(String email) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Email " + email + " is already taken");
+    }
+
     //  Get all roles
     @GetMapping("/roles")
-    public ResponseEntity<List<Role>> getAllRoles() {
-        return ResponseEntity.ok(roleService.findAll());
+    public ResponseEntity<List<RoleResponse>> getAllRoles() {
+        return ResponseEntity.ok(roleService.findAll().stream().map(RoleResponse::from).toList());
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.audit.AuditEntry;
+import habsida.spring.boot_security.demo.audit.AuditService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+public class AuditRestController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final AuditService auditService;
+
+    @Autowired
+    public AuditRestController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    //  Most recent audit entries, newest first
+    @GetMapping
+    public ResponseEntity<List<AuditEntry>> getRecentEntries(@RequestParam(defaultValue = "100") int limit) throws IOException {
+        return ResponseEntity.ok(auditService.recent(Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    //  Queue and writer counters, including dropped entries
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() throws IOException {
+        return ResponseEntity.ok(auditService.stats());
+    }
+}
@@ -1,5 +1,6 @@
 package habsida.spring.boot_security.demo.controller;
 
+import habsida.spring.boot_security.demo.audit.AuditService;
 import habsida.spring.boot_security.demo.model.Role;
 
 import habsida.spring.boot_security.demo.service.RoleService;
@@ -15,6 +16,9 @@ public class RoleController {
     @Autowired
     private RoleService roleService;
 
+    @Autowired
+    private AuditService auditService;
+
     @GetMapping
     public String listRoles(Model model) {
         model.addAttribute("roles", roleService.findAll());
@@ -30,12 +34,14 @@ public class RoleController {
     @PostMapping("/update")
     public String updateRole(@ModelAttribute Role role) {
         roleService.save(role);
+        auditService.record("ROLE_UPDATE", "role:" + role.getId(), role.getName());
         return "redirect:/admin/roles";
     }
 
     @GetMapping("/delete/{id}")
     public String deleteRole(@PathVariable Long id) {
         roleService.deleteById(id);
+        auditService.record("ROLE_DELETE", "role:" + id, null);
         return "redirect:/admin/roles";
     }
 
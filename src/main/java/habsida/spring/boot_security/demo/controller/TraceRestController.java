@@ -0,0 +1,39 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.configs.RequestTrace;
+import habsida.spring.boot_security.demo.configs.RequestTraceStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/traces")
+@ConditionalOnProperty(name = "app.trace.enabled", havingValue = "true")
+public class TraceRestController {
+
+    private static final int MAX_LIMIT = 200;
+
+    private final RequestTraceStore traceStore;
+
+    @Autowired
+    public TraceRestController(RequestTraceStore traceStore) {
+        this.traceStore = traceStore;
+    }
+
+    //  Most recent sampled request traces, newest first
+    @GetMapping
+    public ResponseEntity<List<RequestTrace.Snapshot>> getRecentTraces(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(traceStore.recent(Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    //  One trace, by the id sent in its X-Trace-Id header
+    @GetMapping("/{id}")
+    public ResponseEntity<RequestTrace.Snapshot> getTrace(@PathVariable String id) {
+        return traceStore.find(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
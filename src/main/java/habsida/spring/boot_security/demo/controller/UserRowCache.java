@@ -0,0 +1,128 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.configs.RequestTrace;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Rendered HTML of the admin table rows, one entry per user. An entry is reused
+ * while the user's version (updatedAt plus everything the row prints) is
+ * unchanged, so only edited users are re-rendered. Entries are evicted least
+ * recently used first once the cached HTML exceeds the configured size.
+ */
+@Component
+public class UserRowCache {
+
+    private static final String ROW_TEMPLATE = "fragments/user-row";
+
+    private final ITemplateEngine templateEngine;
+    private final long maxChars;
+
+    private final LinkedHashMap<Long, CachedRow> rows = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalChars;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public UserRowCache(ITemplateEngine templateEngine,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.admin.row-cache.max-chars:16777216}") long maxChars) {
+        this.templateEngine = templateEngine;
+        this.maxChars = maxChars;
+        this.hits = meterRegistry.counter("admin.row.cache", "result", "hit");
+        this.misses = meterRegistry.counter("admin.row.cache", "result", "miss");
+        this.evictions = meterRegistry.counter("admin.row.cache.evictions");
+        Gauge.builder("admin.row.cache.entries", this, UserRowCache::size).register(meterRegistry);
+        Gauge.builder("admin.row.cache.chars", this, UserRowCache::chars).register(meterRegistry);
+    }
+
+    public List<String> render(List<User> users, HttpServletRequest request, HttpServletResponse response) {
+        List<String> html = new ArrayList<>(users.size());
+        WebContext context = null;
+        for (User user : users) {
+            String version = versionOf(user);
+            String cached = lookup(user.getId(), version);
+            if (cached != null) {
+                hits.increment();
+                html.add(cached);
+                continue;
+            }
+            misses.increment();
+            if (context == null) {
+                context = new WebContext(JakartaServletWebApplication.buildApplication(request.getServletContext())
+                        .buildExchange(request, response));
+            }
+            context.setVariable("user", user);
+            long renderBegun = RequestTrace.begin(RequestTrace.Phase.RENDER);
+            String rendered = templateEngine.process(ROW_TEMPLATE, context);
+            RequestTrace.end(RequestTrace.Phase.RENDER, renderBegun, () -> ROW_TEMPLATE);
+            store(user.getId(), version, rendered);
+            html.add(rendered);
+        }
+        return html;
+    }
+
+    public synchronized void evict(Long userId) {
+        CachedRow removed = rows.remove(userId);
+        if (removed != null) {
+            totalChars -= removed.html.length();
+        }
+    }
+
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized long chars() {
+        return totalChars;
+    }
+
+    private synchronized String lookup(Long userId, String version) {
+        CachedRow row = rows.get(userId);
+        return row != null && row.version.equals(version) ? row.html : null;
+    }
+
+    private synchronized void store(Long userId, String version, String html) {
+        CachedRow previous = rows.put(userId, new CachedRow(version, html));
+        if (previous != null) {
+            totalChars -= previous.html.length();
+        }
+        totalChars += html.length();
+
+        Iterator<CachedRow> eldest = rows.values().iterator();
+        while (totalChars > maxChars && eldest.hasNext()) {
+            totalChars -= eldest.next().html.length();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static String versionOf(User user) {
+        String roles = user.getRoles().stream()
+                .map(Role::getName)
+                .sorted()
+                .collect(Collectors.joining(","));
+        return user.getUpdatedAt() + "|" + user.getFirstName() + "|" + user.getLastName() + "|"
+                + user.getAge() + "|" + user.getEmail() + "|" + roles;
+    }
+
+    private record CachedRow(String version, String html) {
+    }
+}
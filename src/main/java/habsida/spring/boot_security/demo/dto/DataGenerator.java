@@ -0,0 +1,350 @@
+package habsida.spring.boot_security.demo.dto;
+
+import habsida.spring.boot_security.demo.configs.IdBlockAligner;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Fills the database with synthetic users for benchmarking (profile "datagen").
+ * Rows are generated in fixed-size chunks, each from its own seeded random, so
+ * a given seed yields the same users whatever the thread count. Chunks are
+ * generated and written in parallel, each over its own connection, either as
+ * batched inserts ("jdbc") or as CSV files bulk-loaded with CSVREAD on H2 and
+ * LOAD DATA LOCAL INFILE on MySQL ("csv"). Passwords come from a small pool
+ * hashed once up front: user row n has password "password-" + (n % pool)
+ * (the hashes themselves differ between runs, BCrypt salts are random).
+ */
+@Component
+@Profile("datagen")
+@Order(DataInitializer.ORDER + 1)
+public class DataGenerator implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataGenerator.class);
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Mohamed", "Fatmata", "Ibrahim", "Aminata", "Hassan", "Mariama", "Abdul", "Isatu", "Alhaji", "Kadiatu",
+            "Wei", "Mei", "Hiroshi", "Yuki", "Carlos", "Sofia", "Luca", "Giulia", "Olga", "Ivan"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Koroma", "Kanu", "Sesay", "Kamara", "Bangura", "Conteh", "Turay", "Jalloh", "Mansaray", "Kargbo",
+            "Wang", "Li", "Tanaka", "Sato", "Rossi", "Russo", "Ivanov", "Petrova", "Silva", "Santos"};
+    private static final String[] DOMAINS = {"example.com", "example.org", "example.net", "mail.test"};
+
+    // Fixed so that timestamps, like everything else, depend only on the seed
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final long SPAN_SECONDS = 5L * 365 * 24 * 3600;
+
+    private static final String USER_COLUMNS =
+            "id, username, first_name, last_name, age, email, password, created_at, updated_at, is_active";
+    private static final String INSERT_USER = "INSERT INTO users (" + USER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_ROLE = "INSERT INTO users_roles (user_id, role_id) VALUES (?, ?)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final IdBlockAligner idBlockAligner;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationContext applicationContext;
+
+    @Value("${app.datagen.users:100000}")
+    private long users;
+    @Value("${app.datagen.seed:42}")
+    private long seed;
+    @Value("${app.datagen.mode:jdbc}")
+    private String mode;
+    @Value("${app.datagen.threads:0}")
+    private int threads;
+    @Value("${app.datagen.chunk-size:10000}")
+    private int chunkSize;
+    @Value("${app.datagen.batch-size:1000}")
+    private int batchSize;
+    @Value("${app.datagen.password-pool:16}")
+    private int passwordPool;
+    @Value("${app.datagen.admin-ratio:0.005}")
+    private double adminRatio;
+    @Value("${app.datagen.inactive-ratio:0.03}")
+    private double inactiveRatio;
+    @Value("${app.datagen.exit:true}")
+    private boolean exitWhenDone;
+
+    public DataGenerator(DataSource dataSource, JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder,
+                         IdBlockAligner idBlockAligner, EntityManagerFactory entityManagerFactory,
+                         ApplicationContext applicationContext) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.idBlockAligner = idBlockAligner;
+        this.entityManagerFactory = entityManagerFactory;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Long adminRole = jdbcTemplate.queryForObject("SELECT id FROM roles WHERE name = 'ADMIN'", Long.class);
+        Long userRole = jdbcTemplate.queryForObject("SELECT id FROM roles WHERE name = 'USER'", Long.class);
+        long firstId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class) + 1;
+        String product;
+        try (Connection connection = dataSource.getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        }
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        log.info("Generating {} users from id {} (seed {}, mode {}, {} threads, {})",
+                users, firstId, seed, mode, workers, product);
+
+        long started = System.nanoTime();
+        String[] passwords = IntStream.range(0, passwordPool).parallel()
+                .mapToObj(i -> passwordEncoder.encode("password-" + i))
+                .toArray(String[]::new);
+        Batch.Context context = new Batch.Context(firstId, adminRole, userRole, passwords, product);
+
+        long chunks = (users + chunkSize - 1) / chunkSize;
+        AtomicLong written = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                long from = chunk * chunkSize;
+                long to = Math.min(users, from + chunkSize);
+                Batch batch = new Batch(context, chunk, from, to);
+                pending.add(executor.submit(() -> {
+                    if (mode.equalsIgnoreCase("csv")) {
+                        writeCsv(batch);
+                    } else {
+                        writeJdbc(batch);
+                    }
+                    long done = written.addAndGet(to - from);
+                    if (done / chunkSize % 100 == 0 || done == users) {
+                        log.info("{} / {} users", done, users);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Ids were written directly, so move the id generator past them and drop cached state
+        idBlockAligner.align();
+        entityManagerFactory.getCache().evictAll();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        log.info("Generated {} users in {} s ({} users/s)", users,
+                String.format(Locale.ROOT, "%.1f", seconds), String.format(Locale.ROOT, "%.0f", users / seconds));
+
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void writeJdbc(Batch batch) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            relaxChecks(connection, batch.context.product);
+            try (PreparedStatement insertUser = connection.prepareStatement(INSERT_USER);
+                 PreparedStatement insertRole = connection.prepareStatement(INSERT_USER_ROLE)) {
+                Row row = new Row();
+                int pending = 0;
+                for (long n = batch.from; n < batch.to; n++) {
+                    batch.next(row, n);
+                    insertUser.setLong(1, row.id);
+                    insertUser.setString(2, row.email);
+                    insertUser.setString(3, row.firstName);
+                    insertUser.setString(4, row.lastName);
+                    insertUser.setInt(5, row.age);
+                    insertUser.setString(6, row.email);
+                    insertUser.setString(7, row.password);
+                    insertUser.setTimestamp(8, Timestamp.valueOf(row.createdAt));
+                    insertUser.setTimestamp(9, Timestamp.valueOf(row.updatedAt));
+                    insertUser.setBoolean(10, row.active);
+                    insertUser.addBatch();
+                    for (long role : row.roles) {
+                        insertRole.setLong(1, row.id);
+                        insertRole.setLong(2, role);
+                        insertRole.addBatch();
+                    }
+                    // Users go first, the role rows reference them
+                    if (++pending == batchSize) {
+                        insertUser.executeBatch();
+                        insertRole.executeBatch();
+                        pending = 0;
+                    }
+                }
+                insertUser.executeBatch();
+                insertRole.executeBatch();
+                connection.commit();
+            } finally {
+                restoreChecks(connection, batch.context.product);
+            }
+        }
+    }
+
+    private void writeCsv(Batch batch) throws IOException, SQLException {
+        Path usersFile = Files.createTempFile("datagen-users-" + batch.chunk + "-", ".csv");
+        Path rolesFile = Files.createTempFile("datagen-users-roles-" + batch.chunk + "-", ".csv");
+        try {
+            try (BufferedWriter usersOut = Files.newBufferedWriter(usersFile, StandardCharsets.UTF_8);
+                 BufferedWriter rolesOut = Files.newBufferedWriter(rolesFile, StandardCharsets.UTF_8)) {
+                usersOut.write(USER_COLUMNS.replace(" ", "").toUpperCase(Locale.ROOT));
+                usersOut.newLine();
+                rolesOut.write("USER_ID,ROLE_ID");
+                rolesOut.newLine();
+                Row row = new Row();
+                for (long n = batch.from; n < batch.to; n++) {
+                    batch.next(row, n);
+                    // Generated values never contain commas or quotes
+                    usersOut.write(row.id + "," + row.email + "," + row.firstName + "," + row.lastName + ","
+                            + row.age + "," + row.email + "," + row.password + ","
+                            + Timestamp.valueOf(row.createdAt) + "," + Timestamp.valueOf(row.updatedAt) + ","
+                            + (row.active ? 1 : 0));
+                    usersOut.newLine();
+                    for (long role : row.roles) {
+                        rolesOut.write(row.id + "," + role);
+                        rolesOut.newLine();
+                    }
+                }
+            }
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(false);
+                relaxChecks(connection, batch.context.product);
+                try {
+                    if (isMySql(batch.context.product)) {
+                        // Needs allowLoadLocalInfile=true on the JDBC URL and local_infile on the server
+                        statement.execute("LOAD DATA LOCAL INFILE '" + sqlPath(usersFile) + "' INTO TABLE users"
+                                + " FIELDS TERMINATED BY ',' LINES TERMINATED BY '\\n' IGNORE 1 LINES"
+                                + " (id, username, first_name, last_name, age, email, password, created_at, updated_at, @active)"
+                                + " SET is_active = (@active = '1')");
+                        statement.execute("LOAD DATA LOCAL INFILE '" + sqlPath(rolesFile) + "' INTO TABLE users_roles"
+                                + " FIELDS TERMINATED BY ',' LINES TERMINATED BY '\\n' IGNORE 1 LINES (user_id, role_id)");
+                    } else {
+                        statement.execute("INSERT INTO users (" + USER_COLUMNS + ") SELECT * FROM CSVREAD('"
+                                + sqlPath(usersFile) + "', NULL, 'charset=UTF-8')");
+                        statement.execute("INSERT INTO users_roles (user_id, role_id) SELECT * FROM CSVREAD('"
+                                + sqlPath(rolesFile) + "', NULL, 'charset=UTF-8')");
+                    }
+                    connection.commit();
+                } finally {
+                    restoreChecks(connection, batch.context.product);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(usersFile);
+            Files.deleteIfExists(rolesFile);
+        }
+    }
+
+    // Bulk loads of rows known to be consistent skip per-row key checks on MySQL
+    private static void relaxChecks(Connection connection, String product) throws SQLException {
+        setChecks(connection, product, 0);
+    }
+
+    // Session variables outlive the borrow: Hikari does not reset them when the connection returns to the pool
+    private static void restoreChecks(Connection connection, String product) throws SQLException {
+        setChecks(connection, product, 1);
+    }
+
+    private static void setChecks(Connection connection, String product, int value) throws SQLException {
+        if (isMySql(product)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET unique_checks = " + value + ", foreign_key_checks = " + value);
+            }
+        }
+    }
+
+    private static boolean isMySql(String product) {
+        return product.toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    private static String sqlPath(Path file) {
+        return file.toAbsolutePath().toString().replace("\\", "/").replace("'", "''");
+    }
+
+    private static final class Row {
+        long id;
+        String firstName;
+        String lastName;
+        String email;
+        String password;
+        int age;
+        boolean active;
+        LocalDateTime createdAt;
+        LocalDateTime updatedAt;
+        long[] roles;
+    }
+
+    private final class Batch {
+
+        record Context(long firstId, long adminRole, long userRole, String[] passwords, String product) {
+        }
+
+        private final Context context;
+        private final long chunk;
+        private final long from;
+        private final long to;
+        private final SplittableRandom random;
+        private final long[] adminRoles;
+        private final long[] userRoles;
+
+        Batch(Context context, long chunk, long from, long to) {
+            this.context = context;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            // One stream per chunk, derived from the seed and the chunk number only
+            this.random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + chunk);
+            this.adminRoles = new long[]{context.adminRole, context.userRole};
+            this.userRoles = new long[]{context.userRole};
+        }
+
+        void next(Row row, long n) {
+            row.id = context.firstId + n;
+            row.firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            row.lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            row.email = (row.firstName + "." + row.lastName + "." + row.id).toLowerCase(Locale.ROOT)
+                    + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            row.password = context.passwords[(int) (n % context.passwords.length)];
+            // Two uniform draws give ages peaking in the late forties
+            row.age = 18 + random.nextInt(31) + random.nextInt(32);
+            row.active = random.nextDouble() >= inactiveRatio;
+            row.createdAt = EPOCH.plusSeconds(random.nextLong(SPAN_SECONDS));
+            row.updatedAt = row.createdAt.plusSeconds(random.nextLong(30L * 24 * 3600));
+            row.roles = random.nextDouble() < adminRatio ? adminRoles : userRoles;
+        }
+    }
+}
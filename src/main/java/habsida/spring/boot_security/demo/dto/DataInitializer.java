@@ -6,15 +6,33 @@ import habsida.spring.boot_security.demo.repository.RoleRepository;
 import habsida.spring.boot_security.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Seeds the default roles and the admin/user accounts into an empty database.
+ * A populated database costs a single count query at startup; seeding happens
+ * in one transaction, so a node that loses the race against another node
+ * seeding the same database just rolls back.
+ */
 @Component
+@Order(DataInitializer.ORDER)
 public class DataInitializer implements CommandLineRunner {
 
+    // Runners that need the seeded roles order themselves after this
+    public static final int ORDER = 0;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -24,79 +42,61 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Override
     public void run(String... args) {
         System.out.println("=== DataInitializer Starting ===");
-        
-        // Check and insert roles only if not present
-        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> {
-            System.out.println("Creating ADMIN role...");
-            return roleRepository.save(Role.builder()
-                    .name("ADMIN")
-                    .description("Administrator role")
-                    .build());
-        });
-        
-        Role userRole = roleRepository.findByName("USER").orElseGet(() -> {
-            System.out.println("Creating USER role...");
-            return roleRepository.save(Role.builder()
-                    .name("USER")
-                    .description("Regular user role")
-                    .build());
-        });
-
-        System.out.println("Admin role: " + adminRole.getName() + " (ID: " + adminRole.getId() + ")");
-        System.out.println("User role: " + userRole.getName() + " (ID: " + userRole.getId() + ")");
 
-        if (!userRepository.existsByEmail("admin@gmail.com")) {
-            System.out.println("Creating admin user...");
-            User admin = new User();
-            admin.setUsername("admin@gmail.com");
-            admin.setPassword(passwordEncoder.encode("admin"));
-            admin.setEmail("admin@gmail.com");
-            admin.setAge(23);
-            admin.setFirstName("Hassan");
-            admin.setLastName("Koroma");
-            Set<Role> adminRoles = new HashSet<>();
-            adminRoles.add(adminRole);
-            adminRoles.add(userRole);
-            admin.setRoles(adminRoles);
-            User savedAdmin = userRepository.save(admin);
-            System.out.println("Admin user created with ID: " + savedAdmin.getId());
+        if (userRepository.count() > 0) {
+            System.out.println("Users already present, skipping seed data");
         } else {
-            System.out.println("Admin user already exists");
+            try {
+                int seeded = transactionTemplate.execute(status -> seed());
+                System.out.println("Seeded " + seeded + " users");
+            } catch (DataIntegrityViolationException e) {
+                System.out.println("Seed data was inserted concurrently, skipping");
+            }
         }
 
-        // Create a normal user only if it doesn't exist
-        if (!userRepository.existsByEmail("user@gmail.com")) {
-            System.out.println("Creating regular user...");
-            User user = new User();
-            user.setUsername("user@gmail.com"); // Set username to email for consistency
-            user.setPassword(passwordEncoder.encode("user"));
-            user.setEmail("user@gmail.com");
-            user.setAge(33);
-            user.setFirstName("Mohamed");
-            user.setLastName("Kanu");
-            Set<Role> userRoles = new HashSet<>();
-            userRoles.add(userRole);
-            user.setRoles(userRoles);
-            
-            User savedUser = userRepository.save(user);
-            System.out.println("Regular user created with ID: " + savedUser.getId());
-        } else {
-            System.out.println("Regular user already exists");
-        }
-        
-        // Print all users for debugging
-        System.out.println("=== All Users in Database ===");
-        userRepository.findAll().forEach(u -> {
-            System.out.println("User: " + u.getEmail() + " (ID: " + u.getId() + ")");
-            System.out.println("  Username: " + u.getUsername());
-            System.out.println("  Password: " + u.getPassword());
-            System.out.println("  Roles: " + u.getRoles().stream().map(Role::getName).toList());
-            System.out.println("  Active: " + u.isActive());
-        });
-        
         System.out.println("=== DataInitializer Completed ===");
     }
+
+    private int seed() {
+        Map<String, Role> roles = roleRepository.findAll().stream()
+                .collect(Collectors.toMap(Role::getName, Function.identity()));
+        List<Role> missingRoles = new ArrayList<>();
+        Role adminRole = roles.computeIfAbsent("ADMIN", name -> newRole(name, "Administrator role", missingRoles));
+        Role userRole = roles.computeIfAbsent("USER", name -> newRole(name, "Regular user role", missingRoles));
+        roleRepository.saveAll(missingRoles);
+
+        List<User> users = List.of(
+                newUser("admin@gmail.com", "admin", 23, "Hassan", "Koroma", Set.of(adminRole, userRole)),
+                newUser("user@gmail.com", "user", 33, "Mohamed", "Kanu", Set.of(userRole)));
+        userRepository.saveAll(users);
+        userRepository.flush();
+        return users.size();
+    }
+
+    private static Role newRole(String name, String description, List<Role> created) {
+        Role role = Role.builder()
+                .name(name)
+                .description(description)
+                .build();
+        created.add(role);
+        return role;
+    }
+
+    private User newUser(String email, String password, int age, String firstName, String lastName, Set<Role> roles) {
+        User user = new User();
+        user.setUsername(email);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setEmail(email);
+        user.setAge(age);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setRoles(new HashSet<>(roles));
+        return user;
+    }
 }
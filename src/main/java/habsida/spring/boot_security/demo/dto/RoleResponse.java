@@ -0,0 +1,49 @@
+package habsida.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import habsida.spring.boot_security.demo.model.Role;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+
+@Getter
+@AllArgsConstructor
+@JsonSerialize(using = RoleResponse.Serializer.class)
+public class RoleResponse {
+
+    private final long id;
+    private final String name;
+    private final String description;
+
+    public static RoleResponse from(Role role) {
+        return new RoleResponse(role.getId(), role.getName(), role.getDescription());
+    }
+
+    static class Serializer extends StdSerializer<RoleResponse> {
+
+        private static final SerializedString ID = new SerializedString("id");
+        private static final SerializedString NAME = new SerializedString("name");
+        private static final SerializedString DESCRIPTION = new SerializedString("description");
+
+        Serializer() {
+            super(RoleResponse.class);
+        }
+
+        @Override
+        public void serialize(RoleResponse role, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(role, 3);
+            gen.writeFieldName(ID);
+            gen.writeNumber(role.id);
+            gen.writeFieldName(NAME);
+            gen.writeString(role.name);
+            gen.writeFieldName(DESCRIPTION);
+            gen.writeString(role.description);
+            gen.writeEndObject();
+        }
+    }
+}
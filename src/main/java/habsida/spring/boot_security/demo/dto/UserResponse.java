@@ -0,0 +1,82 @@
+package habsida.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the admin API returns for a user: no password hash, no timestamps and
+ * no role graph, just the role names. Written by a hand-rolled serializer with
+ * pre-encoded field names, which works unchanged for JSON and CBOR.
+ */
+@Getter
+@AllArgsConstructor
+@JsonSerialize(using = UserResponse.Serializer.class)
+public class UserResponse {
+
+    private final long id;
+    private final String firstName;
+    private final String lastName;
+    private final int age;
+    private final String email;
+    private final boolean active;
+    private final String[] roles;
+
+    public static UserResponse from(User user) {
+        String[] roles = user.getRoles().stream().map(Role::getName).sorted().toArray(String[]::new);
+        return new UserResponse(user.getId(), user.getFirstName(), user.getLastName(), user.getAge(),
+                user.getEmail(), user.isActive(), roles);
+    }
+
+    static class Serializer extends StdSerializer<UserResponse> {
+
+        private static final SerializedString ID = new SerializedString("id");
+        private static final SerializedString FIRST_NAME = new SerializedString("firstName");
+        private static final SerializedString LAST_NAME = new SerializedString("lastName");
+        private static final SerializedString AGE = new SerializedString("age");
+        private static final SerializedString EMAIL = new SerializedString("email");
+        private static final SerializedString ACTIVE = new SerializedString("active");
+        private static final SerializedString ROLES = new SerializedString("roles");
+
+        // Role names repeat on every row, so each is encoded once
+        private static final Map<String, SerializedString> ROLE_NAMES = new ConcurrentHashMap<>();
+
+        Serializer() {
+            super(UserResponse.class);
+        }
+
+        @Override
+        public void serialize(UserResponse user, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(user, 7);
+            gen.writeFieldName(ID);
+            gen.writeNumber(user.id);
+            gen.writeFieldName(FIRST_NAME);
+            gen.writeString(user.firstName);
+            gen.writeFieldName(LAST_NAME);
+            gen.writeString(user.lastName);
+            gen.writeFieldName(AGE);
+            gen.writeNumber(user.age);
+            gen.writeFieldName(EMAIL);
+            gen.writeString(user.email);
+            gen.writeFieldName(ACTIVE);
+            gen.writeBoolean(user.active);
+            gen.writeFieldName(ROLES);
+            gen.writeStartArray(user.roles, user.roles.length);
+            for (String role : user.roles) {
+                gen.writeString(ROLE_NAMES.computeIfAbsent(role, SerializedString::new));
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+}
@@ -8,14 +8,16 @@ import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "roles")
 @Getter
 @Setter
@@ -25,7 +27,9 @@ import java.util.Objects;
 public class Role implements GrantedAuthority {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "role_ids")
+    @TableGenerator(name = "role_ids", table = "id_blocks", pkColumnName = "segment_name",
+            valueColumnName = "next_val", pkColumnValue = "roles", allocationSize = 10)
     private Long id;
 
     @Column(unique = true, nullable = false, length = 50)
@@ -42,9 +46,6 @@ public class Role implements GrantedAuthority {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @ManyToMany(mappedBy = "roles", fetch = FetchType.LAZY)
-    private Set<User> users = new HashSet<>();
-
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -70,26 +71,6 @@ public class Role implements GrantedAuthority {
         return name.startsWith("ROLE_") ? name : "ROLE_" + name;
     }
 
-       public void addUser(User user) {
-        if (this.users == null) {
-            this.users = new HashSet<>();
-        }
-        this.users.add(user);
-        if (user.getRoles() == null) {
-            user.setRoles(new HashSet<>());
-        }
-        user.getRoles().add(this);
-    }
-
-    public void removeUser(User user) {
-        if (this.users != null) {
-            this.users.remove(user);
-        }
-        if (user.getRoles() != null) {
-            user.getRoles().remove(this);
-        }
-    }
-
     @Override
     public String toString() {
         return "Role{" +
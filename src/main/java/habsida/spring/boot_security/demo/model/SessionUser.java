@@ -0,0 +1,167 @@
+package habsida.spring.boot_security.demo.model;
+
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Principal kept in the HttpSession after login. Holds only what the session
+ * needs (id, email, an authority snapshot, a version) instead of the User
+ * entity with its password hash and role graph. The password is only present
+ * while the login is being verified and is erased right after.
+ */
+public final class SessionUser implements UserDetails, CredentialsContainer, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String email;
+    private final List<GrantedAuthority> authorities;
+    private final long version;
+    private final boolean active;
+    private transient String password;
+
+    public SessionUser(Long id, String email, String password, List<GrantedAuthority> authorities,
+                       long version, boolean active) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+        this.version = version;
+        this.active = active;
+    }
+
+    public static SessionUser from(User user) {
+        List<GrantedAuthority> authorities = AuthorityUtils.createAuthorityList(
+                user.getRoles().stream().map(Role::getAuthority).sorted().toList());
+        return new SessionUser(user.getId(), user.getEmail(), user.getPassword(),
+                authorities, versionOf(user), user.isActive());
+    }
+
+    // updatedAt is bumped on every entity update, so it doubles as a version
+    public static long versionOf(User user) {
+        return user.getUpdatedAt() == null ? 0 : user.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return active;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return active;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return active;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return active;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Objects.equals(email, ((SessionUser) o).email);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(email);
+    }
+
+    @Override
+    public String toString() {
+        return "SessionUser{" +
+                "id=" + id +
+                ", email='" + email + '\'' +
+                ", authorities=" + AuthorityUtils.authorityListToSet(authorities) +
+                ", version=" + version +
+                '}';
+    }
+
+    // Sessions store the compact form below instead of the default object graph
+    @Serial
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("SessionUser is serialized through SerializedForm");
+    }
+
+    private static final class SerializedForm implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final long id;
+        private final String email;
+        private final String authorities;
+        private final long version;
+        private final boolean active;
+
+        SerializedForm(SessionUser user) {
+            this.id = user.id == null ? -1 : user.id;
+            this.email = user.email;
+            this.authorities = String.join(",", AuthorityUtils.authorityListToSet(user.authorities));
+            this.version = user.version;
+            this.active = user.active;
+        }
+
+        @Serial
+        private Object readResolve() {
+            return new SessionUser(id < 0 ? null : id, email, null,
+                    AuthorityUtils.commaSeparatedStringToAuthorityList(authorities), version, active);
+        }
+    }
+}
@@ -7,13 +7,20 @@ import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.time.LocalDateTime;
 import java.util.*;
 
+// Roles are lazy and only fetched where a repository method names the graph. Roles
+// are the only association, so login, listing, detail and export share one plan.
 @Entity
+@NamedEntityGraph(name = User.WITH_ROLES_GRAPH, attributeNodes = @NamedAttributeNode("roles"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "users")
 @Getter
 @Setter
@@ -21,9 +28,14 @@ import java.util.*;
 @AllArgsConstructor
 @Builder
 public class User implements UserDetails {
-    
+
+    public static final String WITH_ROLES_GRAPH = "User.withRoles";
+
+    // Ids are handed out in blocks per node (see IdBlockAligner), so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_ids")
+    @TableGenerator(name = "user_ids", table = "id_blocks", pkColumnName = "segment_name",
+            valueColumnName = "next_val", pkColumnValue = "users", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false, length = 100)
@@ -65,7 +77,8 @@ public class User implements UserDetails {
     @Column(name = "is_active")
     private boolean isActive = true;
 
-    @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.MERGE})
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.MERGE})
     @JoinTable(
             name = "users_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -129,19 +142,12 @@ public class User implements UserDetails {
             this.roles = new HashSet<>();
         }
         this.roles.add(role);
-        if (role.getUsers() == null) {
-            role.setUsers(new HashSet<>());
-        }
-        role.getUsers().add(this);
     }
 
     public void removeRole(Role role) {
         if (this.roles != null) {
             this.roles.remove(role);
         }
-        if (role.getUsers() != null) {
-            role.getUsers().remove(this);
-        }
     }
 
     public boolean hasRole(String roleName) {
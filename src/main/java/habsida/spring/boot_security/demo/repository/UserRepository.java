@@ -1,24 +1,76 @@
 package habsida.spring.boot_security.demo.repository;
 
 import habsida.spring.boot_security.demo.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    @EntityGraph(User.WITH_ROLES_GRAPH)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByEmail(String email);
 
+    // For logins: never answered from the query cache, and the rows read refresh the entity regions
+    @EntityGraph(User.WITH_ROLES_GRAPH)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "REFRESH"))
+    @Query("SELECT u FROM User u WHERE u.email = :email")
+    Optional<User> findCredentialsByEmail(@Param("email") String email);
+
+    @EntityGraph(User.WITH_ROLES_GRAPH)
     Optional<User> findByUsername(String username);
 
+    // findById stays lazy for the write paths, which replace the roles anyway
+    @EntityGraph(User.WITH_ROLES_GRAPH)
+    Optional<User> findDetailById(Long id);
+
     boolean existsByUsername(String username);
 
-    @Query("SELECT DISTINCT u FROM User u JOIN FETCH u.roles")
+    boolean existsByUsernameAndIdNot(String username, Long id);
+
+    @EntityGraph(User.WITH_ROLES_GRAPH)
+    @Query("SELECT u FROM User u ORDER BY u.id")
     List<User> findAllWithRoles();
 
+    // Paging ids first keeps LIMIT/OFFSET in SQL; a fetch join would page in memory
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<Long> findIdPage(Pageable pageable);
+
+    @EntityGraph(User.WITH_ROLES_GRAPH)
+    @Query("SELECT u FROM User u WHERE u.id IN :ids ORDER BY u.id")
+    List<User> findAllWithRolesByIdIn(@Param("ids") Collection<Long> ids);
+
     boolean existsByEmail(String mail);
+
+    boolean existsByEmailAndIdNot(String mail, Long id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.email FROM User u")
+    Stream<String> streamAllEmails();
+
+    // (user id, role id) pairs straight from users_roles, for the role index
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "SELECT user_id, role_id FROM users_roles", nativeQuery = true)
+    Stream<Object[]> streamRoleMemberships();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id FROM User u WHERE u.isActive = true")
+    Stream<Long> streamActiveIds();
+
+    // (id, email, password, active, updated at) of every user, for the credential snapshot
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id, u.email, u.password, u.isActive, u.updatedAt FROM User u")
+    Stream<Object[]> streamCredentials();
 }
\ No newline at end of file
@@ -0,0 +1,386 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.SessionUser;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * The credentials directory (email, password hash, authorities, active flag)
+ * as a compact binary file, memory-mapped read-only so it lives off-heap and
+ * is shared with the page cache. Login falls back to it when the database
+ * cannot be reached. Lookups probe an open-addressing table of (email hash,
+ * record offset) slots. A refresh writes a new file next to the old one and
+ * renames it into place, so a reader never sees a partial file and lookups
+ * in flight keep the mapping they started with. A refresh that fails (the
+ * database is down, the directory is read-only) is logged and counted, and
+ * the previous mapping stays in use. The file left by the previous run is
+ * mapped at startup. It holds password hashes and is created readable by the
+ * owner only.
+ * <p>
+ * Layout: a 40-byte header (magic, format, created-at millis, users, slots,
+ * slot table offset, role table offset), the user records (id, version,
+ * authority bits, active, email, hash), the role table (one authority per
+ * bit) and the slot table, 8 bytes per slot, 0 meaning empty.
+ */
+@Component
+public class CredentialSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(CredentialSnapshot.class);
+
+    static final int MAGIC = 0x43524453; // "CRDS"
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 40;
+    private static final int MAX_ROLES = Long.SIZE;
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path file;
+    private final Counter refreshFailures;
+
+    private volatile Mapped mapped;
+
+    public CredentialSnapshot(UserRepository userRepository,
+                              RoleRepository roleRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.credential-snapshot.file:data/credential-snapshot.bin}") String file) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.file = Path.of(file);
+        this.refreshFailures = meterRegistry.counter("auth.credential.snapshot.refresh.failures");
+        if (Files.exists(this.file)) {
+            try {
+                mapped = open(this.file);
+                log.info("Mapped credential snapshot {} with {} users, taken at {}", this.file, mapped.users,
+                        Instant.ofEpochMilli(mapped.createdAt));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable credential snapshot {}: {}", this.file, e.toString());
+            }
+        }
+        Gauge.builder("auth.credential.snapshot.age.seconds", this, CredentialSnapshot::ageSeconds)
+                .register(meterRegistry);
+        Gauge.builder("auth.credential.snapshot.users", this, snapshot -> {
+            Mapped current = snapshot.mapped;
+            return current == null ? 0 : current.users;
+        }).register(meterRegistry);
+    }
+
+    // A fresh principal each call, as authentication erases its credentials
+    public Optional<SessionUser> find(String email) {
+        Mapped current = mapped;
+        return current == null || email == null ? Optional.empty() : Optional.ofNullable(current.find(email));
+    }
+
+    public double ageSeconds() {
+        Mapped current = mapped;
+        return current == null ? Double.NaN : (System.currentTimeMillis() - current.createdAt) / 1000.0;
+    }
+
+    // Runs on startup too, so it must never throw: a transaction that cannot begin fails inside the
+    // template rather than in a proxy around this method, and is caught here like any other failure
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.credential-snapshot.refresh-interval-ms:300000}",
+            fixedDelayString = "${app.credential-snapshot.refresh-interval-ms:300000}")
+    public void refresh() {
+        long started = System.currentTimeMillis();
+        try {
+            Mapped written = transactionTemplate.execute(status -> {
+                try {
+                    return take(started);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            mapped = written;
+            log.info("Credential snapshot written: {} users, {} bytes in {} ms", written.users,
+                    written.buffer.capacity(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            log.error("Could not refresh credential snapshot {}, keeping the previous one", file, e);
+        }
+    }
+
+    private Mapped take(long started) throws IOException {
+        Map<Long, String> authorities = new LinkedHashMap<>();
+        for (Role role : roleRepository.findAll()) {
+            authorities.put(role.getId(), role.getAuthority());
+        }
+        List<Long> roleIds = new ArrayList<>(authorities.keySet());
+        Map<Long, Long> bits = new HashMap<>();
+        try (Stream<Object[]> memberships = userRepository.streamRoleMemberships()) {
+            memberships.forEach(row -> {
+                int bit = roleIds.indexOf(((Number) row[1]).longValue());
+                if (bit >= 0) {
+                    bits.merge(((Number) row[0]).longValue(), 1L << bit, (a, b) -> a | b);
+                }
+            });
+        }
+        try (Stream<Object[]> users = userRepository.streamCredentials()) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            write(file, authorities, bits, users, started);
+            return open(file);
+        }
+    }
+
+    /**
+     * Writes users (rows of id, email, password hash, active, updated-at) with
+     * their authority bits to a temporary file beside target, then renames it
+     * over target.
+     */
+    static void write(Path target, Map<Long, String> authorities, Map<Long, Long> bits,
+                      Stream<Object[]> users, long createdAt) throws IOException {
+        if (authorities.size() > MAX_ROLES) {
+            throw new IllegalStateException("The credential snapshot holds at most " + MAX_ROLES + " roles");
+        }
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.write(new byte[HEADER_BYTES]);
+                int[] hashes = new int[1024];
+                long[] offsets = new long[1024];
+                int count = 0;
+                for (Object[] row : (Iterable<Object[]>) users::iterator) {
+                    byte[] email = ((String) row[1]).getBytes(StandardCharsets.UTF_8);
+                    byte[] hash = ((String) row[2]).getBytes(StandardCharsets.UTF_8);
+                    if (email.length > 0xFFFF || hash.length > 0xFFFF) {
+                        continue;
+                    }
+                    if (count == hashes.length) {
+                        hashes = Arrays.copyOf(hashes, count * 2);
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    long id = ((Number) row[0]).longValue();
+                    hashes[count] = hash(email, email.length);
+                    offsets[count++] = out.size();
+                    out.writeLong(id);
+                    out.writeLong(versionOf(row[4]));
+                    out.writeLong(bits.getOrDefault(id, 0L));
+                    out.writeBoolean(Boolean.TRUE.equals(row[3]));
+                    out.writeShort(email.length);
+                    out.write(email);
+                    out.writeShort(hash.length);
+                    out.write(hash);
+                }
+                long rolesOffset = out.size();
+                out.writeInt(authorities.size());
+                for (String authority : authorities.values()) {
+                    byte[] bytes = authority.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+                long slotsOffset = out.size();
+                int slots = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+                long[] table = new long[slots];
+                for (int i = 0; i < count; i++) {
+                    int index = hashes[i] & (slots - 1);
+                    while (table[index] != 0) {
+                        index = (index + 1) & (slots - 1);
+                    }
+                    table[index] = ((long) hashes[i] << 32) | offsets[i];
+                }
+                for (long slot : table) {
+                    out.writeLong(slot);
+                }
+                out.flush();
+                // DataOutputStream.size() stops counting at Integer.MAX_VALUE, as does a single mapping
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Credential snapshot over 2 GB");
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC).putInt(FORMAT).putLong(createdAt).putInt(count).putInt(slots)
+                        .putLong(slotsOffset).putLong(rolesOffset).flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static Mapped open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a credential snapshot: " + size + " bytes");
+            }
+            return new Mapped(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // For tests, which map a snapshot written without a database
+    void replace(Mapped snapshot) {
+        mapped = snapshot;
+    }
+
+    private static long versionOf(Object updatedAt) {
+        if (updatedAt instanceof LocalDateTime time) {
+            return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        if (updatedAt instanceof Timestamp time) {
+            return time.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return 0;
+    }
+
+    // FNV-1a, then the murmur3 finalizer so linear probing sees well-spread low bits
+    private static int hash(byte[] bytes, int length) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    static final class Mapped {
+
+        private final MappedByteBuffer buffer;
+        private final long createdAt;
+        private final int users;
+        private final int slots;
+        private final int slotsOffset;
+        private final List<GrantedAuthority> authorities;
+
+        Mapped(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                throw new IOException("Not a credential snapshot, or an unknown format");
+            }
+            this.createdAt = buffer.getLong(8);
+            this.users = buffer.getInt(16);
+            this.slots = buffer.getInt(20);
+            this.slotsOffset = (int) buffer.getLong(24);
+            if (Integer.bitCount(slots) != 1 || (long) slotsOffset + slots * 8L != buffer.capacity()) {
+                throw new IOException("Truncated credential snapshot");
+            }
+            int position = (int) buffer.getLong(32);
+            int roles = buffer.getInt(position);
+            position += 4;
+            List<GrantedAuthority> authorities = new ArrayList<>(roles);
+            for (int i = 0; i < roles; i++) {
+                String authority = string(position);
+                authorities.add(new SimpleGrantedAuthority(authority));
+                position += 2 + (buffer.getShort(position) & 0xFFFF);
+            }
+            this.authorities = List.copyOf(authorities);
+        }
+
+        long createdAt() {
+            return createdAt;
+        }
+
+        int users() {
+            return users;
+        }
+
+        SessionUser find(String email) {
+            byte[] wanted = email.getBytes(StandardCharsets.UTF_8);
+            int hash = hash(wanted, wanted.length);
+            int mask = slots - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes < slots; probes++) {
+                long slot = buffer.getLong(slotsOffset + index * 8);
+                if (slot == 0) {
+                    return null;
+                }
+                int offset = (int) slot;
+                if ((int) (slot >>> 32) == hash && emailAt(offset + 25, wanted)) {
+                    return read(offset);
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private boolean emailAt(int position, byte[] wanted) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            if (length != wanted.length) {
+                return false;
+            }
+            byte[] stored = new byte[length];
+            buffer.get(position + 2, stored);
+            return Arrays.equals(stored, wanted);
+        }
+
+        private SessionUser read(int offset) {
+            long id = buffer.getLong(offset);
+            long version = buffer.getLong(offset + 8);
+            long bits = buffer.getLong(offset + 16);
+            boolean active = buffer.get(offset + 24) != 0;
+            int position = offset + 25;
+            String email = string(position);
+            position += 2 + (buffer.getShort(position) & 0xFFFF);
+            String password = string(position);
+            List<GrantedAuthority> granted = new ArrayList<>(Long.bitCount(bits));
+            for (int bit = 0; bit < authorities.size(); bit++) {
+                if ((bits & (1L << bit)) != 0) {
+                    granted.add(authorities.get(bit));
+                }
+            }
+            granted.sort((a, b) -> a.getAuthority().compareTo(b.getAuthority()));
+            return new SessionUser(id, email, password, granted, version, active);
+        }
+
+        private String string(int position) {
+            byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+            buffer.get(position + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
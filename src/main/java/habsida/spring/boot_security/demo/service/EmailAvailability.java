@@ -0,0 +1,127 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Answers "is this email free?" for the admin form. Emails known to the Bloom
+ * filter are confirmed with existsByEmail; everything else is answered without
+ * touching the database. The filter is rebuilt from the users table at startup
+ * and periodically, which also forgets deleted users; until the first build
+ * every check goes to the database. The unique constraint stays the final word.
+ */
+@Component
+public class EmailAvailability {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailAvailability.class);
+
+    private final UserRepository userRepository;
+    private final long expectedEmails;
+    private final double falsePositiveRate;
+
+    private volatile EmailBloomFilter filter;
+    private volatile EmailBloomFilter building;
+    // Registered since the last rebuild began, in case the rebuild's read missed them
+    private final Set<String> recent = ConcurrentHashMap.newKeySet();
+    // Held by register and by the swap, so a registration lands in the filter that survives it
+    private final Object swap = new Object();
+
+    private final Counter filtered;
+    private final Counter taken;
+    private final Counter falsePositives;
+    private final Counter unfiltered;
+
+    public EmailAvailability(UserRepository userRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.email-filter.expected-emails:1000000}") long expectedEmails,
+                             @Value("${app.email-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filtered = meterRegistry.counter("users.email.checks", "result", "filtered");
+        this.taken = meterRegistry.counter("users.email.checks", "result", "taken");
+        this.falsePositives = meterRegistry.counter("users.email.checks", "result", "false_positive");
+        this.unfiltered = meterRegistry.counter("users.email.checks", "result", "unfiltered");
+    }
+
+    public boolean isAvailable(String email) {
+        return isAvailable(email, null);
+    }
+
+    // The row of the user with this id, if any, does not count: the collation may match it in another case
+    public boolean isAvailable(String email, Long userId) {
+        String trimmed = email.trim();
+        EmailBloomFilter current = filter;
+        if (current == null) {
+            unfiltered.increment();
+            return !exists(trimmed, userId);
+        }
+        if (!current.mightContain(trimmed)) {
+            filtered.increment();
+            return true;
+        }
+        if (exists(trimmed, userId)) {
+            taken.increment();
+            return false;
+        }
+        falsePositives.increment();
+        return true;
+    }
+
+    private boolean exists(String email, Long userId) {
+        return userId == null ? userRepository.existsByEmail(email) : userRepository.existsByEmailAndIdNot(email, userId);
+    }
+
+    // Called before the user is saved, so no check can see the row without the filter knowing it
+    public void register(String email) {
+        if (email == null) {
+            return;
+        }
+        synchronized (swap) {
+            recent.add(EmailBloomFilter.normalize(email));
+            EmailBloomFilter current = filter;
+            if (current != null) {
+                current.put(email);
+            }
+            EmailBloomFilter next = building;
+            if (next != null) {
+                next.put(email);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.email-filter.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.email-filter.rebuild-interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        long users = userRepository.count();
+        EmailBloomFilter next = new EmailBloomFilter(Math.max(expectedEmails, users * 2), falsePositiveRate);
+        building = next;
+        try (Stream<String> emails = userRepository.streamAllEmails()) {
+            emails.forEach(next::put);
+        }
+        synchronized (swap) {
+            recent.forEach(next::put);
+            filter = next;
+            building = null;
+            recent.clear();
+        }
+        log.info("Email filter built from {} users ({} bits, {} hashes) in {} ms",
+                users, next.bits(), next.hashes(), System.currentTimeMillis() - started);
+    }
+}
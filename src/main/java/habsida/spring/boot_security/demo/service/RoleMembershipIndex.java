@@ -0,0 +1,251 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Role membership as compressed bitmaps of user ids (one per role, plus one of
+ * active users), so role combinations are answered with bitmap AND/OR/ANDNOT
+ * instead of joins through users_roles. Readers use an immutable snapshot;
+ * a change copies only the bitmaps it touches and publishes a new snapshot
+ * once the transaction that made it has committed. Built when the application
+ * is ready and rebuilt periodically, which also picks up rows written around
+ * UserServiceImpl. Ids are stored as unsigned 32-bit values.
+ */
+@Component
+public class RoleMembershipIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(RoleMembershipIndex.class);
+
+    private final UserRepository userRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), new RoaringBitmap(), false);
+    // Changes seen while a rebuild is reading, replayed onto its result
+    private List<Change> duringRebuild;
+
+    public RoleMembershipIndex(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        Gauge.builder("users.role.index.bytes", this, index -> index.snapshot.sizeInBytes()).register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return snapshot.ready;
+    }
+
+    /**
+     * Members of (role or any of anyOf) and all of allOf, minus noneOf, optionally
+     * only active (true) or inactive (false) users; at most limit ids above after.
+     */
+    public Page members(long roleId, Collection<Long> anyOf, Collection<Long> allOf, Collection<Long> noneOf,
+                        Boolean active, long after, int limit) {
+        Snapshot current = snapshot;
+        RoaringBitmap result = current.role(roleId).clone();
+        for (Long id : anyOf) {
+            result.or(current.role(id));
+        }
+        for (Long id : allOf) {
+            result.and(current.role(id));
+        }
+        for (Long id : noneOf) {
+            result.andNot(current.role(id));
+        }
+        if (Boolean.TRUE.equals(active)) {
+            result.and(current.active);
+        } else if (Boolean.FALSE.equals(active)) {
+            result.andNot(current.active);
+        }
+
+        long[] ids = new long[Math.max(0, limit)];
+        int count = 0;
+        PeekableIntIterator iterator = result.getIntIterator();
+        if (after >= 0) {
+            if (after >= 0xFFFFFFFFL) {
+                return new Page(new long[0], null, result.getLongCardinality());
+            }
+            iterator.advanceIfNeeded((int) (after + 1));
+        }
+        while (count < ids.length && iterator.hasNext()) {
+            ids[count++] = Integer.toUnsignedLong(iterator.next());
+        }
+        Long next = count == ids.length && iterator.hasNext() && count > 0 ? ids[count - 1] : null;
+        return new Page(count == ids.length ? ids : Arrays.copyOf(ids, count), next,
+                result.getLongCardinality());
+    }
+
+    // The user now has exactly these roles
+    public void update(Long userId, Set<Long> roleIds, boolean active) {
+        afterCommit(new Change(userId, Set.copyOf(roleIds), active));
+    }
+
+    public void remove(Long userId) {
+        afterCommit(new Change(userId, null, false));
+    }
+
+    // Not read-only, so it reads the primary: a lagging replica could miss a change already
+    // applied here before the rebuild began, and the rebuilt snapshot would then undo it
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.role-index.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.role-index.rebuild-interval-ms:3600000}")
+    @Transactional
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        synchronized (this) {
+            duringRebuild = new ArrayList<>();
+        }
+        Snapshot built;
+        try (Stream<Object[]> memberships = userRepository.streamRoleMemberships();
+             Stream<Long> active = userRepository.streamActiveIds()) {
+            built = load(memberships, active);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                duringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            for (Change change : duringRebuild) {
+                built = built.with(change);
+            }
+            duringRebuild = null;
+            snapshot = built;
+        }
+        log.info("Role index built: {} roles, {} active users, {} bytes in {} ms", built.roles.size(),
+                built.active.getLongCardinality(), built.sizeInBytes(), System.currentTimeMillis() - started);
+    }
+
+    static Snapshot load(Stream<Object[]> memberships, Stream<Long> activeIds) {
+        Map<Long, RoaringBitmap> roles = new HashMap<>();
+        memberships.forEach(row -> roles.computeIfAbsent(((Number) row[1]).longValue(), id -> new RoaringBitmap())
+                .add(toInt(((Number) row[0]).longValue())));
+        RoaringBitmap active = new RoaringBitmap();
+        activeIds.forEach(id -> active.add(toInt(id)));
+        roles.values().forEach(RoaringBitmap::runOptimize);
+        active.runOptimize();
+        return new Snapshot(roles, active, true);
+    }
+
+    synchronized void apply(Change change) {
+        snapshot = snapshot.with(change);
+        if (duringRebuild != null) {
+            duringRebuild.add(change);
+        }
+    }
+
+    // For tests, which load a snapshot without a database
+    void replace(Snapshot built) {
+        synchronized (this) {
+            snapshot = built;
+        }
+    }
+
+    private void afterCommit(Change change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private static int toInt(long id) {
+        if (id < 0 || id > 0xFFFFFFFFL) {
+            throw new IllegalStateException("User id " + id + " does not fit the role index");
+        }
+        return (int) id;
+    }
+
+    /**
+     * One page of user ids; nextCursor is passed as after to get the next page.
+     */
+    public record Page(long[] userIds, Long nextCursor, long total) {
+    }
+
+    // roleIds null means the user was deleted
+    record Change(Long userId, Set<Long> roleIds, boolean active) {
+    }
+
+    static final class Snapshot {
+
+        private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+        private final Map<Long, RoaringBitmap> roles;
+        private final RoaringBitmap active;
+        private final boolean ready;
+
+        Snapshot(Map<Long, RoaringBitmap> roles, RoaringBitmap active, boolean ready) {
+            this.roles = roles;
+            this.active = active;
+            this.ready = ready;
+        }
+
+        RoaringBitmap role(long roleId) {
+            return roles.getOrDefault(roleId, EMPTY);
+        }
+
+        // Copies only the bitmaps whose membership actually changes
+        Snapshot with(Change change) {
+            int user = toInt(change.userId());
+            Map<Long, RoaringBitmap> nextRoles = new HashMap<>(roles);
+            Set<Long> wanted = change.roleIds() == null ? Set.of() : change.roleIds();
+            for (Map.Entry<Long, RoaringBitmap> entry : roles.entrySet()) {
+                if (entry.getValue().contains(user) && !wanted.contains(entry.getKey())) {
+                    RoaringBitmap copy = entry.getValue().clone();
+                    copy.remove(user);
+                    nextRoles.put(entry.getKey(), copy);
+                }
+            }
+            for (Long roleId : wanted) {
+                RoaringBitmap members = roles.get(roleId);
+                if (members == null || !members.contains(user)) {
+                    RoaringBitmap copy = members == null ? new RoaringBitmap() : members.clone();
+                    copy.add(user);
+                    nextRoles.put(roleId, copy);
+                }
+            }
+            RoaringBitmap nextActive = active;
+            boolean isActive = change.roleIds() != null && change.active();
+            if (active.contains(user) != isActive) {
+                nextActive = active.clone();
+                if (isActive) {
+                    nextActive.add(user);
+                } else {
+                    nextActive.remove(user);
+                }
+            }
+            return new Snapshot(nextRoles, nextActive, ready);
+        }
+
+        long sizeInBytes() {
+            long bytes = active.getLongSizeInBytes();
+            for (RoaringBitmap members : roles.values()) {
+                bytes += members.getLongSizeInBytes();
+            }
+            return bytes;
+        }
+    }
+}
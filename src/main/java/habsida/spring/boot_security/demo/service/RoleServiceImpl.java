@@ -1,21 +1,28 @@
 package habsida.spring.boot_security.demo.service;
 
 import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
 import habsida.spring.boot_security.demo.repository.RoleRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
 
 @Service
+@Transactional(readOnly = true)
 public class RoleServiceImpl implements RoleService {
 
     private final RoleRepository roleRepository;
+    private final EntityManagerFactory entityManagerFactory;
 
     @Autowired
-    public RoleServiceImpl(RoleRepository roleRepository) {
+    public RoleServiceImpl(RoleRepository roleRepository, EntityManagerFactory entityManagerFactory) {
         this.roleRepository = roleRepository;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
@@ -34,12 +41,17 @@ public class RoleServiceImpl implements RoleService {
     }
 
     @Override
+    @Transactional
     public Role save(Role role) {
         return roleRepository.save(role);
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
         roleRepository.deleteById(id);
+        // Cached User.roles collections hold role ids and are not touched by the delete itself
+        entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                .evictCollectionData(User.class.getName() + ".roles");
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package habsida.spring.boot_security.demo.service;
 
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,6 +18,8 @@ public interface UserService {
 
     List<User> findAllWithRoles();
 
+    Page<User> findPageWithRoles(int page, int size);
+
     void deleteUserById(Long id);
 
     List<User> findAllUsers();
@@ -39,4 +42,11 @@ public interface UserService {
 
     Optional<Role> findRoleById(Long id);
 
+    boolean isEmailAvailable(String email);
+
+    // Whether the user with this id may take the email; their own row does not count
+    boolean isEmailAvailable(String email, Long userId);
+
+    boolean isEmailTakenByOther(String email, Long userId);
+
 }
\ No newline at end of file
@@ -2,51 +2,75 @@ package habsida.spring.boot_security.demo.service;
 
 import habsida.spring.boot_security.demo.repository.RoleRepository;
 import habsida.spring.boot_security.demo.repository.UserRepository;
+import habsida.spring.boot_security.demo.model.SessionUser;
 import habsida.spring.boot_security.demo.model.User;
 import habsida.spring.boot_security.demo.model.Role;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import org.springframework.security.core.GrantedAuthority;
 
+// Reads run in read-only transactions, which go to a replica when one is configured
 @Service
+@Transactional(readOnly = true)
 public class UserServiceImpl implements UserService, UserDetailsService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
+    private final EmailAvailability emailAvailability;
+    private final RoleMembershipIndex roleMembershipIndex;
+    private final VerifiedCredentialCache verifiedCredentialCache;
 
     @Autowired
     public UserServiceImpl(UserRepository userRepository,
                            RoleService roleService,
                            RoleRepository roleRepository,
-                           PasswordEncoder passwordEncoder) {
+                           PasswordEncoder passwordEncoder,
+                           EmailAvailability emailAvailability,
+                           RoleMembershipIndex roleMembershipIndex,
+                           VerifiedCredentialCache verifiedCredentialCache) {
         this.userRepository = userRepository;
         this.roleService = roleService;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.emailAvailability = emailAvailability;
+        this.roleMembershipIndex = roleMembershipIndex;
+        this.verifiedCredentialCache = verifiedCredentialCache;
     }
 
     @Override
     public List<User> findAllWithRoles() {
         return userRepository.findAllWithRoles();
     }
+
+    @Override
+    public Page<User> findPageWithRoles(int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        List<Long> ids = userRepository.findIdPage(pageRequest);
+        List<User> users = ids.isEmpty() ? List.of() : userRepository.findAllWithRolesByIdIn(ids);
+        return new PageImpl<>(users, pageRequest, userRepository.count());
+    }
     @Override
     public Optional<User> getLoggedInUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
     @Override
+    @Transactional
     public void updateUser(Long id, String firstName, String lastName, int age, String email, String password, List<Long> roleIds) {
         User user = userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found"));
 
@@ -65,10 +89,13 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         Set<Role> roles = new HashSet<>(roleRepository.findAllById(roleIds));
         user.setRoles(roles);
 
+        emailAvailability.register(email);
         userRepository.save(user);
+        indexRoles(user);
     }
 
     @Override
+    @Transactional
     public void saveUser(User user) {
         // Fetch existing user if it's an update
         Optional<User> existingUserOpt = user.getId() != null ? userRepository.findById(user.getId()) : Optional.empty();
@@ -96,10 +123,13 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
         user.setRoles(resolvedRoles);
 
+        emailAvailability.register(user.getEmail());
         userRepository.save(user);
+        indexRoles(user);
     }
 
     @Override
+    @Transactional
     public void saveUserWithRoles(User user, List<Long> roleIds) {
         // Encode password
 //        user.setPassword(passwordEncoder.encode(user.getPassword()));
@@ -116,17 +146,25 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
         user.setRoles(roles);
         
+        emailAvailability.register(user.getEmail());
         userRepository.save(user);
+        indexRoles(user);
     }
 
     @Override
+    @Transactional
     public void deleteUserById(Long id) {
         userRepository.deleteById(id);
+        roleMembershipIndex.remove(id);
+        verifiedCredentialCache.invalidate(id);
     }
 
     @Override
+    @Transactional
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        roleMembershipIndex.remove(id);
+        verifiedCredentialCache.invalidate(id);
     }
 
     @Override
@@ -146,12 +184,12 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     @Override
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findDetailById(id);
     }
 
     @Override
     public User findUserById(Long id) {
-        return userRepository.findById(id).orElse(null);
+        return userRepository.findDetailById(id).orElse(null);
     }
 
     @Override
@@ -165,32 +203,41 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     }
 
     @Override
-    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        System.out.println("=== Authentication Debug ===");
-        System.out.println("Attempting to load user with email: " + email);
-        
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            System.out.println("User found: " + user.getEmail());
-            System.out.println("User username field: " + user.getUsername());
-            System.out.println("User password (encoded): " + user.getPassword());
-            System.out.println("User roles: " + user.getRoles().stream().map(Role::getName).collect(Collectors.toList()));
-            System.out.println("User authorities: " + user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
-            System.out.println("User enabled: " + user.isEnabled());
-            System.out.println("User account non-expired: " + user.isAccountNonExpired());
-            System.out.println("User account non-locked: " + user.isAccountNonLocked());
-            System.out.println("User credentials non-expired: " + user.isCredentialsNonExpired());
-            System.out.println("=== End Authentication Debug ===");
-            return user;
-        } else {
-            System.out.println("User not found with email: " + email);
-            System.out.println("Available users in database:");
-            userRepository.findAll().forEach(u -> System.out.println("  - " + u.getEmail() + " (username: " + u.getUsername() + ")"));
-            System.out.println("=== End Authentication Debug ===");
-            throw new UsernameNotFoundException("User not found with email: " + email);
+    public boolean isEmailAvailable(String email) {
+        return emailAvailability.isAvailable(email);
+    }
+
+    @Override
+    public boolean isEmailAvailable(String email, Long userId) {
+        return emailAvailability.isAvailable(email, userId);
+    }
+
+    // Asked after a write failed on a constraint, so not read-only: a replica may not have the other row yet
+    @Override
+    @Transactional
+    public boolean isEmailTakenByOther(String email, Long userId) {
+        if (userId == null) {
+            return userRepository.existsByEmail(email) || userRepository.existsByUsername(email);
         }
+        return userRepository.existsByEmailAndIdNot(email, userId) || userRepository.existsByUsernameAndIdNot(email, userId);
+    }
+
+    // Applied to the role index once the surrounding transaction commits; cached Basic credentials are dropped
+    private void indexRoles(User user) {
+        verifiedCredentialCache.invalidate(user.getId());
+        roleMembershipIndex.update(user.getId(),
+                user.getRoles().stream().map(Role::getId).collect(Collectors.toSet()), user.isActive());
+    }
+
+    // Returns a slim principal rather than the entity, since it ends up in the HttpSession. Not
+    // read-only, so it reads the primary: a lagging replica or a cached row could hand back a
+    // password or role that was just changed, and VerifiedCredentialCache would keep it for its TTL
+    @Override
+    @Transactional
+    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        User user = userRepository.findCredentialsByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        return SessionUser.from(user);
     }
 
 }
@@ -0,0 +1,154 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.model.SessionUser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Credentials that recently passed the BCrypt check, so an HTTP Basic client
+ * repeating the same email and password within the TTL skips the user lookup
+ * and the hash. Entries are keyed by an HMAC of (email, password) under a
+ * random per-process secret; neither the password nor its BCrypt hash is kept.
+ * Bounded, least recently used first out. UserServiceImpl invalidates a user's
+ * entries whenever it saves or deletes them, once now and again after commit;
+ * a verification that started before an invalidation is not cached.
+ */
+@Component
+public class VerifiedCredentialCache {
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final SecretKeySpec secret;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Long, Set<String>> keysByUser = new HashMap<>();
+    // Bumped by every invalidation; a put carrying an older value is dropped
+    private long generation;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedCredentialCache(MeterRegistry meterRegistry,
+                                   @Value("${app.basic-auth.cache.ttl-ms:60000}") long ttlMillis,
+                                   @Value("${app.basic-auth.cache.max-entries:10000}") int maxEntries) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.secret = new SecretKeySpec(key, HMAC);
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("auth.basic.cache", "result", "hit");
+        this.misses = meterRegistry.counter("auth.basic.cache", "result", "miss");
+        Gauge.builder("auth.basic.cache.entries", this, VerifiedCredentialCache::size).register(meterRegistry);
+    }
+
+    public String keyOf(String email, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(secret);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized SessionUser get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.increment();
+            return entry.user;
+        }
+        if (entry != null) {
+            remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Read before verifying, passed back to put
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void put(String key, SessionUser user, long seenGeneration) {
+        if (seenGeneration != generation || maxEntries <= 0) {
+            return;
+        }
+        user.eraseCredentials();
+        Entry previous = entries.put(key, new Entry(user, System.currentTimeMillis() + ttlMillis));
+        if (previous != null && !previous.user.getId().equals(user.getId())) {
+            unlink(key, previous.user.getId());
+        }
+        keysByUser.computeIfAbsent(user.getId(), id -> new HashSet<>()).add(key);
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            unlink(evicted.getKey(), evicted.getValue().user.getId());
+        }
+    }
+
+    // The user's password, roles or active flag may have changed, or the user is gone
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict(Long userId) {
+        generation++;
+        Set<String> keys = keysByUser.remove(userId);
+        if (keys != null) {
+            keys.forEach(entries::remove);
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        unlink(key, entry.user.getId());
+    }
+
+    private void unlink(String key, Long userId) {
+        Set<String> keys = keysByUser.get(userId);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByUser.remove(userId);
+        }
+    }
+
+    private record Entry(SessionUser user, long expiresAt) {
+    }
+}
@@ -0,0 +1,312 @@
+// Confirmation dialog built on the Bootstrap modal in admin.html
+function confirmAction(title, text, confirmText) {
+  return new Promise(resolve => {
+    const modalElement = document.getElementById('confirmModal');
+    const modal = bootstrap.Modal.getOrCreateInstance(modalElement);
+    const confirmButton = modalElement.querySelector('.confirm-ok');
+    let confirmed = false;
+
+    modalElement.querySelector('.modal-title').textContent = title;
+    modalElement.querySelector('.modal-body').textContent = text;
+    confirmButton.textContent = confirmText;
+
+    const onConfirm = () => {
+      confirmed = true;
+      modal.hide();
+    };
+    confirmButton.addEventListener('click', onConfirm, { once: true });
+    modalElement.addEventListener('hidden.bs.modal', () => {
+      confirmButton.removeEventListener('click', onConfirm);
+      resolve(confirmed);
+    }, { once: true });
+
+    modal.show();
+  });
+}
+
+function showAlert(type, text) {
+  const alert = document.createElement('div');
+  alert.className = 'alert alert-' + type + ' alert-dismissible fade show';
+  alert.setAttribute('role', 'alert');
+  alert.textContent = text;
+  const close = document.createElement('button');
+  close.type = 'button';
+  close.className = 'btn-close';
+  close.setAttribute('data-bs-dismiss', 'alert');
+  close.setAttribute('aria-label', 'Close');
+  alert.appendChild(close);
+  document.getElementById('adminAlerts').replaceChildren(alert);
+}
+
+async function requestJson(url, options) {
+  const response = await fetch(url, Object.assign({
+    headers: { 'Content-Type': 'application/json', 'Accept': 'application/json' }
+  }, options));
+  if (!response.ok) {
+    throw new Error(response.status + ' ' + (await response.text() || response.statusText));
+  }
+  return response.status === 204 ? null : response;
+}
+
+// Users table. Only the rows in view (plus some overscan) are in the DOM; the
+// rest of the list lives in `users`, indexed by position in id order, and is
+// fetched from the REST API a page at a time as it scrolls into view.
+document.addEventListener("DOMContentLoaded", function () {
+  const API = '/api/admin/users';
+  const OVERSCAN = 10;
+
+  const viewport = document.getElementById('usersViewport');
+  const table = document.getElementById('usersTable');
+  const tbody = table.tBodies[0];
+  const rowTemplate = document.getElementById('userRowTemplate');
+  const roleOptions = Array.from(document.getElementById('edit-roles').options);
+  const addForm = document.getElementById("addUserForm");
+  const editForm = document.getElementById("editUserForm");
+
+  const pageSize = Number(table.dataset.pageSize) || 100;
+  let total = Number(table.dataset.total) || 0;
+  const users = [];
+  const pending = new Set();
+  let rowHeight = 0;
+  let scheduled = false;
+
+  // Seed from the server-rendered first page
+  Array.from(tbody.rows).forEach((row, index) => {
+    const cell = name => row.querySelector('.user-' + name).textContent;
+    const roles = cell('roles');
+    users[index] = {
+      id: Number(row.dataset.id),
+      firstName: cell('firstName'),
+      lastName: cell('lastName'),
+      age: Number(cell('age')),
+      email: cell('email'),
+      roles: roles ? roles.split(',').map(role => role.trim()) : []
+    };
+    rowHeight = rowHeight || row.getBoundingClientRect().height;
+  });
+  rowHeight = rowHeight || 49;
+
+  function buildRow(user, index) {
+    const row = rowTemplate.content.firstElementChild.cloneNode(true);
+    row.dataset.index = index;
+    if (!user) {
+      row.classList.add('row-placeholder');
+      row.querySelector('.user-firstName').textContent = 'Loading…';
+      row.querySelectorAll('button').forEach(button => button.disabled = true);
+      return row;
+    }
+    row.dataset.id = user.id;
+    row.querySelector('.user-id').textContent = user.id;
+    row.querySelector('.user-firstName').textContent = user.firstName;
+    row.querySelector('.user-lastName').textContent = user.lastName;
+    row.querySelector('.user-age').textContent = user.age;
+    row.querySelector('.user-email').textContent = user.email;
+    row.querySelector('.user-roles').textContent = user.roles.join(', ');
+    return row;
+  }
+
+  function spacer(height) {
+    const row = document.createElement('tr');
+    row.setAttribute('aria-hidden', 'true');
+    row.style.height = height + 'px';
+    return row;
+  }
+
+  function render() {
+    scheduled = false;
+    const visible = Math.ceil(viewport.clientHeight / rowHeight);
+    const first = Math.max(0, Math.floor(viewport.scrollTop / rowHeight) - OVERSCAN);
+    const last = Math.min(total, first + visible + 2 * OVERSCAN);
+
+    const fragment = document.createDocumentFragment();
+    fragment.appendChild(spacer(first * rowHeight));
+    for (let index = first; index < last; index++) {
+      const user = users[index];
+      if (!user) {
+        loadPage(Math.floor(index / pageSize));
+      }
+      fragment.appendChild(buildRow(user, index));
+    }
+    fragment.appendChild(spacer((total - last) * rowHeight));
+    tbody.replaceChildren(fragment);
+  }
+
+  function scheduleRender() {
+    if (!scheduled) {
+      scheduled = true;
+      requestAnimationFrame(render);
+    }
+  }
+
+  async function loadPage(page) {
+    if (pending.has(page)) {
+      return;
+    }
+    pending.add(page);
+    try {
+      const response = await requestJson(API + '?page=' + page + '&size=' + pageSize, { method: 'GET' });
+      const totalHeader = response.headers.get('X-Total-Count');
+      if (totalHeader !== null) {
+        total = Number(totalHeader);
+      }
+      (await response.json()).forEach((user, offset) => {
+        // Keep rows changed locally while the page was in flight
+        users[page * pageSize + offset] ??= user;
+      });
+      scheduleRender();
+    } catch (error) {
+      showAlert('danger', 'Could not load users: ' + error.message);
+    } finally {
+      pending.delete(page);
+    }
+  }
+
+  function indexOf(row) {
+    return Number(row.closest('tr').dataset.index);
+  }
+
+  function selectedRoles(select) {
+    return Array.from(select.selectedOptions).map(option => ({ id: Number(option.value), name: option.text }));
+  }
+
+  function formUser(form) {
+    return {
+      firstName: form.elements.firstName.value,
+      lastName: form.elements.lastName.value,
+      age: Number(form.elements.age.value),
+      email: form.elements.email.value,
+      password: form.elements.password.value,
+      roles: selectedRoles(form.elements[form === addForm ? 'roles' : 'roleIds'])
+    };
+  }
+
+  tbody.addEventListener('click', function (event) {
+    const editButton = event.target.closest('.editBtn');
+    if (editButton) {
+      const user = users[indexOf(editButton)];
+      editForm.dataset.index = indexOf(editButton);
+      document.getElementById('edit-id').value = user.id;
+      document.getElementById('edit-firstName').value = user.firstName;
+      document.getElementById('edit-lastName').value = user.lastName;
+      document.getElementById('edit-age').value = user.age;
+      document.getElementById('edit-email').value = user.email;
+      document.getElementById('edit-password').value = '';
+      roleOptions.forEach(option => {
+        option.selected = user.roles.includes(option.text);
+      });
+      return;
+    }
+
+    const deleteButton = event.target.closest('.deleteBtn');
+    if (deleteButton) {
+      const index = indexOf(deleteButton);
+      const user = users[index];
+      confirmAction('Are you sure?', 'This user will be permanently deleted!', 'Yes, delete!')
+          .then(async confirmed => {
+            if (!confirmed) {
+              return;
+            }
+            try {
+              await requestJson(API + '/' + user.id, { method: 'DELETE' });
+              // The row may have moved while the dialog was open
+              const current = users[index] === user ? index : users.indexOf(user);
+              if (current >= 0) {
+                users.splice(current, 1);
+              }
+              total--;
+              render();
+              showAlert('success', 'User ' + user.email + ' deleted.');
+            } catch (error) {
+              showAlert('danger', 'Could not delete user: ' + error.message);
+            }
+          });
+    }
+  });
+
+  addForm.addEventListener("submit", function (event) {
+    event.preventDefault();
+    confirmAction('Are you sure?', 'This will add a new user to the system.', 'Yes, add user!')
+        .then(async confirmed => {
+          if (!confirmed) {
+            return;
+          }
+          try {
+            const response = await requestJson(API, { method: 'POST', body: JSON.stringify(formUser(addForm)) });
+            const user = await response.json();
+            // Ids are increasing, so a new user belongs at the end of the list
+            users[total] = user;
+            total++;
+            addForm.reset();
+            bootstrap.Modal.getOrCreateInstance(document.getElementById('exampleModal')).hide();
+            render();
+            showAlert('success', 'User ' + user.email + ' added.');
+          } catch (error) {
+            showAlert('danger', 'Could not add user: ' + error.message);
+          }
+        });
+  });
+
+  editForm.addEventListener("submit", function (event) {
+    event.preventDefault();
+    const index = Number(editForm.dataset.index);
+    const id = document.getElementById('edit-id').value;
+    confirmAction('Confirm Edit', 'Are you sure you want to update this user?', 'Yes, update!')
+        .then(async confirmed => {
+          if (!confirmed) {
+            return;
+          }
+          try {
+            const response = await requestJson(API + '/' + id, { method: 'PUT', body: JSON.stringify(formUser(editForm)) });
+            const user = await response.json();
+            const current = users[index] && users[index].id === user.id
+                ? index : users.findIndex(u => u && u.id === user.id);
+            if (current >= 0) {
+              users[current] = user;
+            }
+            bootstrap.Modal.getOrCreateInstance(document.getElementById('editModal')).hide();
+            render();
+            showAlert('success', 'User ' + user.email + ' updated.');
+          } catch (error) {
+            showAlert('danger', 'Could not update user: ' + error.message);
+          }
+        });
+  });
+
+  // Flags a taken email while it is typed; the server still answers 409 if one slips through
+  function watchEmail(input, ownEmail) {
+    let timer = null;
+    let sequence = 0;
+    input.addEventListener('input', function () {
+      clearTimeout(timer);
+      input.setCustomValidity('');
+      const email = input.value.trim();
+      if (!email || email === ownEmail() || !input.checkValidity()) {
+        return;
+      }
+      const current = ++sequence;
+      timer = setTimeout(async () => {
+        try {
+          const response = await requestJson(API + '/email-available?email=' + encodeURIComponent(email),
+              { method: 'GET' });
+          const result = await response.json();
+          if (current === sequence && !result.available) {
+            input.setCustomValidity('This email is already taken');
+            input.reportValidity();
+          }
+        } catch (error) {
+          // Leave it to the server to reject on submit
+        }
+      }, 250);
+    });
+  }
+
+  watchEmail(addForm.elements.email, () => null);
+  watchEmail(document.getElementById('edit-email'), () => {
+    const user = users[Number(editForm.dataset.index)];
+    return user ? user.email : null;
+  });
+
+  viewport.addEventListener('scroll', scheduleRender, { passive: true });
+  window.addEventListener('resize', scheduleRender);
+  render();
+});
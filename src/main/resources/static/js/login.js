@@ -0,0 +1,29 @@
+document.addEventListener("DOMContentLoaded", function () {
+  const passwordInput = document.getElementById('password');
+  const toggleIcon = document.getElementById('passwordToggleIcon');
+  const successMessage = document.getElementById('successMessage');
+
+  document.getElementById('passwordToggle').addEventListener('click', function () {
+    if (passwordInput.type === 'password') {
+      passwordInput.type = 'text';
+      toggleIcon.classList.remove('fa-eye');
+      toggleIcon.classList.add('fa-eye-slash');
+    } else {
+      passwordInput.type = 'password';
+      toggleIcon.classList.remove('fa-eye-slash');
+      toggleIcon.classList.add('fa-eye');
+    }
+  });
+
+  document.getElementById('successMessageClose').addEventListener('click', function () {
+    successMessage.style.display = 'none';
+  });
+
+  // Auto-hide success message after 5 seconds
+  setTimeout(function () {
+    successMessage.style.opacity = '0';
+    setTimeout(() => {
+      successMessage.style.display = 'none';
+    }, 300);
+  }, 5000);
+});
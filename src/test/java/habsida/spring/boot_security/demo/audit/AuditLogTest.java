@@ -0,0 +1,74 @@
+package habsida.spring.boot_security.demo.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rotatesSegmentsAndReadsNewestFirst() throws Exception {
+        List<AuditEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new AuditEntry(i, "admin@gmail.com", "USER_UPDATE", "user:" + i, "x".repeat(100)));
+        }
+
+        try (AuditLog log = new AuditLog(directory, 16 * 1024, 3, 0)) {
+            log.append(batch);
+            assertEquals(3, log.segmentCount());
+
+            List<AuditEntry> recent = log.readRecent(10);
+            assertEquals(10, recent.size());
+            assertEquals("user:499", recent.get(0).getTarget());
+            assertEquals("user:490", recent.get(9).getTarget());
+        }
+    }
+
+    @Test
+    void resumesAfterLastRecordOnReopen() throws Exception {
+        try (AuditLog log = new AuditLog(directory, 16 * 1024, 3, 0)) {
+            log.append(List.of(new AuditEntry(1, "admin", "ROLE_DELETE", "role:1", null)));
+        }
+        try (AuditLog log = new AuditLog(directory, 16 * 1024, 3, 0)) {
+            log.append(List.of(new AuditEntry(2, "admin", "ROLE_DELETE", "role:2", null)));
+            List<AuditEntry> recent = log.readRecent(5);
+            assertEquals(2, recent.size());
+            assertEquals("role:2", recent.get(0).getTarget());
+            assertEquals("role:1", recent.get(1).getTarget());
+        }
+    }
+
+    @Test
+    void queueRejectsWhenFull() {
+        AuditQueue queue = new AuditQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(new AuditEntry(i, "a", "b", "c", "d")));
+        }
+        assertFalse(queue.offer(new AuditEntry(5, "a", "b", "c", "d")));
+
+        List<AuditEntry> drained = new ArrayList<>();
+        assertEquals(4, queue.drainTo(drained, 10));
+        assertEquals(0, queue.size());
+        assertTrue(queue.offer(new AuditEntry(6, "a", "b", "c", "d")));
+    }
+
+    @Test
+    void truncatesOnCharacterBoundary() {
+        // One ASCII byte followed by two-byte characters puts a continuation byte at the limit
+        String details = "x" + "\u00e9".repeat(AuditEntry.MAX_FIELD_BYTES);
+        AuditEntry entry = new AuditEntry(1, "admin", "USER_UPDATE", "user:1", details);
+
+        AuditEntry decoded = AuditEntry.decode(ByteBuffer.wrap(entry.encode()));
+        assertEquals(details.substring(0, 1 + (AuditEntry.MAX_FIELD_BYTES - 2) / 2), decoded.getDetails());
+        assertFalse(decoded.getDetails().contains("\ufffd"));
+    }
+}
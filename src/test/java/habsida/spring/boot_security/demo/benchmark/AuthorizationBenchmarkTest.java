@@ -0,0 +1,109 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager;
+import habsida.spring.boot_security.demo.configs.WebSecurityConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Cost of one authorization decision: the requestMatchers chain the rules used
+ * to be declared with against the compiled rule trie, over a mix of requests
+ * that hit early rules, late rules and the anyRequest fallback.
+ * Run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+class AuthorizationBenchmarkTest {
+
+    private static final int ROUNDS = 2_000_000;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final List<String[]> REQUESTS = List.of(
+            new String[]{"GET", "/api/admin/users"},
+            new String[]{"PUT", "/api/admin/users/42"},
+            new String[]{"GET", "/admin"},
+            new String[]{"POST", "/admin/update"},
+            new String[]{"GET", "/user"},
+            new String[]{"GET", "/api/users/me"},
+            new String[]{"GET", "/actuator/health"},
+            new String[]{"GET", "/actuator/metrics"},
+            new String[]{"GET", "/login"},
+            new String[]{"GET", "/js/admin.js"});
+
+    @Test
+    void decisionsPerSecond() {
+        Authentication admin = new TestingAuthenticationToken("admin@gmail.com", null, "ROLE_ADMIN", "ROLE_USER");
+        RequestAuthorizationContext[] contexts = REQUESTS.stream()
+                .map(request -> context(request[0], request[1]))
+                .toArray(RequestAuthorizationContext[]::new);
+        AuthorizationManager<HttpServletRequest> chain = matcherChain();
+        CompiledAuthorizationManager compiled = WebSecurityConfig.authorizationRules();
+
+        Predicate<RequestAuthorizationContext> viaChain = context -> chain.check(() -> admin, context.getRequest()).isGranted();
+        Predicate<RequestAuthorizationContext> viaTrie = context -> compiled.check(() -> admin, context).isGranted();
+        // Warm-up round for each, then the best of the measured ones
+        run(viaChain, contexts);
+        run(viaTrie, contexts);
+        double chainRate = 0;
+        double trieRate = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            chainRate = Math.max(chainRate, run(viaChain, contexts));
+            trieRate = Math.max(trieRate, run(viaTrie, contexts));
+        }
+        System.out.printf("%n%-28s %14s%n", "authorization manager", "decisions/s");
+        System.out.printf("%-28s %14.0f%n", "requestMatchers chain", chainRate);
+        System.out.printf("%-28s %14.0f%n", "compiled rule trie", trieRate);
+    }
+
+    private static double run(Predicate<RequestAuthorizationContext> decide, RequestAuthorizationContext[] contexts) {
+        int granted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            if (decide.test(contexts[i % contexts.length])) {
+                granted++;
+            }
+        }
+        double rate = ROUNDS / ((System.nanoTime() - start) / 1e9);
+        if (granted != ROUNDS) {
+            throw new IllegalStateException("admin was denied " + (ROUNDS - granted) + " times");
+        }
+        return rate;
+    }
+
+    private static AuthorizationManager<HttpServletRequest> matcherChain() {
+        AuthorizationManager<RequestAuthorizationContext> admin = AuthorityAuthorizationManager.hasRole("ADMIN");
+        AuthorizationManager<RequestAuthorizationContext> user = AuthorityAuthorizationManager.hasAnyRole("USER", "ADMIN");
+        AuthorizationManager<RequestAuthorizationContext> permit = (authentication, context) -> new AuthorizationDecision(true);
+        return RequestMatcherDelegatingAuthorizationManager.builder()
+                .add(new AntPathRequestMatcher("/api/admin/**", "GET"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "POST"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "PUT"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "DELETE"), admin)
+                .add(new AntPathRequestMatcher("/admin/**"), admin)
+                .add(new AntPathRequestMatcher("/user/**"), user)
+                .add(new AntPathRequestMatcher("/api/users/**"), user)
+                .add(new AntPathRequestMatcher("/actuator/health/**"), permit)
+                .add(new AntPathRequestMatcher("/actuator/**"), admin)
+                .add(AnyRequestMatcher.INSTANCE, permit)
+                .build();
+    }
+
+    private static RequestAuthorizationContext context(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return new RequestAuthorizationContext(request);
+    }
+}
@@ -0,0 +1,167 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.Table;
+import org.h2.tools.Server;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Statements, allocation and time for the admin read paths over a large user
+ * directory, with roles mapped EAGER (as User used to be) against LAZY roles
+ * plus the entity graph the repository names. EagerUser is a
+ * read-only view of the same tables with the old mapping.
+ * Run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+class FetchPlanBenchmarkTest {
+
+    private static final int USERS = 10_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int LOOKUPS = 500;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void fetchPlans() throws SQLException {
+        Server server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Role.class)
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(EagerUser.class)
+                .setProperty("hibernate.connection.url",
+                        "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:fetch-benchmark;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.cache.use_second_level_cache", "false")
+                .setProperty("hibernate.generate_statistics", "true")
+                .setProperty("hibernate.jdbc.batch_size", "50")
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        try (SessionFactory sessionFactory = configuration.buildSessionFactory()) {
+            seed(sessionFactory);
+            List<Long> page = sessionFactory.fromSession(session -> session
+                    .createQuery("SELECT u.id FROM User u ORDER BY u.id", Long.class)
+                    .setFirstResult(USERS / 2).setMaxResults(PAGE_SIZE).getResultList());
+            long[] lookupIds = new SplittableRandom(42).longs(LOOKUPS, page.get(0) - USERS / 2, page.get(0) + USERS / 2)
+                    .toArray();
+
+            System.out.printf("%n%-34s %10s %14s %10s%n", "use case (" + USERS + " users)", "statements", "allocated KB", "ms");
+            for (int round = 0; round < 2; round++) {
+                boolean print = round == 1;
+                measure(sessionFactory, print, "lookup by id, eager", session -> {
+                    for (long id : lookupIds) {
+                        session.find(EagerUser.class, id);
+                        session.clear();
+                    }
+                });
+                measure(sessionFactory, print, "lookup by id, lazy", session -> {
+                    for (long id : lookupIds) {
+                        session.find(User.class, id);
+                        session.clear();
+                    }
+                });
+                measure(sessionFactory, print, "list page, eager", session -> session
+                        .createQuery("FROM EagerUser u WHERE u.id IN :ids ORDER BY u.id", EagerUser.class)
+                        .setParameter("ids", page).getResultList());
+                measure(sessionFactory, print, "list page, " + User.WITH_ROLES_GRAPH, session -> session
+                        .createQuery("FROM User u WHERE u.id IN :ids ORDER BY u.id", User.class)
+                        .setParameter("ids", page)
+                        .setHint("jakarta.persistence.fetchgraph", session.getEntityGraph(User.WITH_ROLES_GRAPH))
+                        .getResultList());
+                measure(sessionFactory, print, "export, eager", session -> session
+                        .createQuery("FROM EagerUser u ORDER BY u.id", EagerUser.class).getResultList());
+                measure(sessionFactory, print, "export, " + User.WITH_ROLES_GRAPH, session -> session
+                        .createQuery("FROM User u ORDER BY u.id", User.class)
+                        .setHint("jakarta.persistence.fetchgraph", session.getEntityGraph(User.WITH_ROLES_GRAPH))
+                        .getResultList());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void measure(SessionFactory sessionFactory, boolean print, String name, Consumer<Session> work) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        sessionFactory.inSession(work);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        if (print) {
+            System.out.printf("%-34s %10d %14d %10d%n", name, statistics.getPrepareStatementCount(), allocated / 1024, millis);
+        }
+    }
+
+    private static void seed(SessionFactory sessionFactory) {
+        sessionFactory.inTransaction(session -> {
+            Role admin = Role.builder().name("ADMIN").description("Administrator role").build();
+            Role user = Role.builder().name("USER").description("Regular user role").build();
+            session.persist(admin);
+            session.persist(user);
+            for (int i = 0; i < USERS; i++) {
+                User row = new User();
+                row.setUsername("user" + i + "@example.com");
+                row.setEmail("user" + i + "@example.com");
+                row.setFirstName("First" + i);
+                row.setLastName("Last" + i);
+                row.setAge(20 + i % 60);
+                row.setPassword("{noop}password");
+                row.setActive(true);
+                row.setRoles(i % 10 == 0 ? Set.of(admin, user) : Set.of(user));
+                session.persist(row);
+                if ((i + 1) % 50 == 0) {
+                    session.flush();
+                    session.clear();
+                    admin = session.getReference(Role.class, admin.getId());
+                    user = session.getReference(Role.class, user.getId());
+                }
+            }
+        });
+    }
+
+    @Entity(name = "EagerUser")
+    @Immutable
+    @Table(name = "users")
+    public static class EagerUser {
+
+        @Id
+        public Long id;
+
+        @Column(name = "first_name")
+        public String firstName;
+
+        @Column(name = "last_name")
+        public String lastName;
+
+        public String email;
+
+        @ManyToMany(fetch = FetchType.EAGER)
+        @JoinTable(name = "users_roles",
+                joinColumns = @JoinColumn(name = "user_id"),
+                inverseJoinColumns = @JoinColumn(name = "role_id"))
+        public Set<Role> roles;
+    }
+}
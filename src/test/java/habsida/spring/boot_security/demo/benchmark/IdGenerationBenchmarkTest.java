@@ -0,0 +1,115 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import org.h2.tools.Server;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.function.IntFunction;
+
+/**
+ * Insert throughput of IDENTITY ids against pooled-lo blocks from an id table
+ * with JDBC batching. H2 is reached through its TCP server so that, as with
+ * MySQL, every statement sent is a network round trip.
+ * Run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+class IdGenerationBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int ROWS_PER_TRANSACTION = 1_000;
+    private static final int BATCH_SIZE = 50;
+
+    @Test
+    void insertThroughput() throws SQLException {
+        Server server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(IdentityRow.class)
+                .addAnnotatedClass(PooledRow.class)
+                .setProperty("hibernate.connection.url",
+                        "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:id-benchmark;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.cache.use_second_level_cache", "false")
+                .setProperty("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE))
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        try (SessionFactory sessionFactory = configuration.buildSessionFactory()) {
+            // Warm-up round for each, then the measured one
+            insert(sessionFactory, IdentityRow::new);
+            insert(sessionFactory, PooledRow::new);
+            double identity = insert(sessionFactory, IdentityRow::new);
+            double pooled = insert(sessionFactory, PooledRow::new);
+            System.out.printf("%n%-28s %12s%n", "id strategy (" + ROWS + " rows)", "rows/s");
+            System.out.printf("%-28s %12.0f%n", "identity", identity);
+            System.out.printf("%-28s %12.0f%n", "table, pooled-lo, batched", pooled);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static double insert(SessionFactory sessionFactory, IntFunction<Object> row) {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < ROWS; offset += ROWS_PER_TRANSACTION) {
+            try (Session session = sessionFactory.openSession()) {
+                session.beginTransaction();
+                for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+                    session.persist(row.apply(offset + i));
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                session.getTransaction().commit();
+            }
+        }
+        return ROWS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @Entity
+    @Table(name = "identity_rows")
+    public static class IdentityRow {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        public Long id;
+
+        public String email;
+
+        public IdentityRow() {
+        }
+
+        IdentityRow(int n) {
+            this.email = "user" + n + "@example.com";
+        }
+    }
+
+    @Entity
+    @Table(name = "pooled_rows")
+    public static class PooledRow {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "pooled_row_ids")
+        @TableGenerator(name = "pooled_row_ids", table = "benchmark_id_blocks", pkColumnName = "segment_name",
+                valueColumnName = "next_val", pkColumnValue = "pooled_rows", allocationSize = 50)
+        public Long id;
+
+        public String email;
+
+        public PooledRow() {
+        }
+
+        PooledRow(int n) {
+            this.email = "user" + n + "@example.com";
+        }
+    }
+}
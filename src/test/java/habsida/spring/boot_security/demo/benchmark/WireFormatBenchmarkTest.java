@@ -0,0 +1,90 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import habsida.spring.boot_security.demo.dto.UserResponse;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Payload size and encode time of a 10k-user admin list: entities as JSON (the
+ * old response), UserResponse as JSON and UserResponse as CBOR.
+ * Run with: mvn test -DexcludedGroups= -Dgroups=benchmark
+ */
+@Tag("benchmark")
+class WireFormatBenchmarkTest {
+
+    private static final int USERS = 10_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 30;
+
+    @Test
+    void userListEncoding() throws Exception {
+        List<User> entities = users();
+        List<UserResponse> responses = entities.stream().map(UserResponse::from).toList();
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().build();
+
+        System.out.printf("%n%-22s %12s %14s%n", "format (" + USERS + " users)", "bytes", "median encode");
+        report("entity json", () -> json.writeValueAsBytes(entities));
+        report("dto json", () -> json.writeValueAsBytes(responses));
+        report("dto cbor", () -> cbor.writeValueAsBytes(responses));
+    }
+
+    private static void report(String name, Encoder encoder) throws Exception {
+        int size = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            size = encoder.encode().length;
+        }
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            encoder.encode();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-22s %12d %11.2f ms%n", name, size, nanos[MEASURED_ROUNDS / 2] / 1e6);
+    }
+
+    private static List<User> users() {
+        Role admin = role(1L, "ADMIN", "Administrator role");
+        Role user = role(2L, "USER", "Regular user role");
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 1; i <= USERS; i++) {
+            User entity = new User();
+            entity.setId((long) i);
+            entity.setUsername("user" + i + "@example.com");
+            entity.setEmail("user" + i + "@example.com");
+            entity.setFirstName("First" + i);
+            entity.setLastName("Last" + i);
+            entity.setAge(18 + i % 60);
+            entity.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5/mFJ1v6QvH9S2p1Zxx6Nq.");
+            entity.setCreatedAt(LocalDateTime.now());
+            entity.setUpdatedAt(LocalDateTime.now());
+            entity.setRoles(i % 10 == 0 ? new HashSet<>(Set.of(admin, user)) : new HashSet<>(Set.of(user)));
+            users.add(entity);
+        }
+        return users;
+    }
+
+    private static Role role(Long id, String name, String description) {
+        Role role = Role.builder().id(id).name(name).description(description).build();
+        role.setCreatedAt(LocalDateTime.now());
+        role.setUpdatedAt(LocalDateTime.now());
+        return role;
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        byte[] encode() throws Exception;
+    }
+}
@@ -0,0 +1,77 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.UserServiceImpl;
+import habsida.spring.boot_security.demo.service.VerifiedCredentialCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BasicCredentialChangeTest {
+
+    private static final String EMAIL = "basic-change@example.com";
+
+    @Autowired
+    private UserServiceImpl userService;
+
+    @Autowired
+    private DaoAuthenticationProvider daoAuthenticationProvider;
+
+    @Autowired
+    private VerifiedCredentialCache verifiedCredentialCache;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void changedPasswordStopsWorkingStraightAway() {
+        CachingBasicAuthenticationProvider provider =
+                new CachingBasicAuthenticationProvider(daoAuthenticationProvider, verifiedCredentialCache, loginThrottle);
+        User user = new User();
+        user.setFirstName("Basic");
+        user.setLastName("Client");
+        user.setAge(30);
+        user.setEmail(EMAIL);
+        user.setPassword(passwordEncoder.encode("old-password"));
+        user.setRoles(Set.of(Role.builder().name("USER").build()));
+        userService.saveUser(user);
+
+        User stored = userService.findById(user.getId()).orElseThrow();
+        stored.setPassword(passwordEncoder.encode("new-password"));
+
+        double replicaConnections = replicaConnections();
+        assertTrue(login(provider, "old-password").isAuthenticated());
+        assertTrue(login(provider, "old-password").isAuthenticated());
+        userService.saveUser(stored);
+        assertThrows(BadCredentialsException.class, () -> login(provider, "old-password"));
+        assertTrue(login(provider, "new-password").isAuthenticated());
+        // Credentials are never checked against a replica, which may not have the change yet
+        assertEquals(replicaConnections, replicaConnections());
+    }
+
+    private static Authentication login(CachingBasicAuthenticationProvider provider, String password) {
+        return provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, password));
+    }
+
+    private double replicaConnections() {
+        return meterRegistry.counter("datasource.routing.connections", "target", "replica").count();
+    }
+}
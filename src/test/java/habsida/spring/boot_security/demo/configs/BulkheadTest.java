@@ -0,0 +1,55 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    @Test
+    void shedsWhenQueueIsFullOrWaitTimesOut() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 1, 1, 1);
+        assertEquals(Bulkhead.Admission.ADMITTED, bulkhead.acquire(0));
+
+        CompletableFuture<Bulkhead.Admission> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bulkhead.acquire(5000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (bulkhead.queued() == 0) {
+            Thread.onSpinWait();
+        }
+        assertEquals(Bulkhead.Admission.QUEUE_FULL, bulkhead.acquire(5000));
+
+        bulkhead.release(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(Bulkhead.Admission.ADMITTED, waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(Bulkhead.Admission.TIMED_OUT, bulkhead.acquire(10));
+    }
+
+    @Test
+    void limitGrowsWhileFastAndShrinksWhenLatencyRises() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(20, 2, 100, 0);
+        for (int i = 0; i < 15; i++) {
+            bulkhead.acquire(0);
+        }
+        for (int i = 0; i < 200; i++) {
+            bulkhead.release(TimeUnit.MILLISECONDS.toNanos(1));
+            bulkhead.acquire(0);
+        }
+        int fastLimit = bulkhead.limit();
+        assertTrue(fastLimit > 20, "limit " + fastLimit);
+
+        for (int i = 0; i < 200; i++) {
+            bulkhead.release(TimeUnit.MILLISECONDS.toNanos(20));
+            bulkhead.acquire(0);
+        }
+        int slowLimit = bulkhead.limit();
+        assertTrue(slowLimit < 20, "limit " + slowLimit);
+        assertTrue(slowLimit >= 2);
+    }
+}
@@ -0,0 +1,108 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.SessionUser;
+import habsida.spring.boot_security.demo.service.VerifiedCredentialCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingBasicAuthenticationProviderTest {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VerifiedCredentialCache cache = new VerifiedCredentialCache(meterRegistry, 60_000, 2);
+    private final LoginThrottle loginThrottle =
+            new LoginThrottle(meterRegistry, 4, 1000, 60_000, 10, 6000, 50, 1000, 3, 1000, 900_000);
+
+    // Stands in for the DAO provider: user N has id N and password "secret"
+    private final AuthenticationProvider delegate = new AuthenticationProvider() {
+        @Override
+        public Authentication authenticate(Authentication authentication) {
+            verifications.incrementAndGet();
+            if (!"secret".equals(authentication.getCredentials())) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            String email = authentication.getName();
+            SessionUser user = new SessionUser(Long.parseLong(email.substring(0, email.indexOf('@'))), email,
+                    "{bcrypt}hash", List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), 0, true);
+            return UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+        }
+
+        @Override
+        public boolean supports(Class<?> authentication) {
+            return true;
+        }
+    };
+
+    private final CachingBasicAuthenticationProvider provider =
+            new CachingBasicAuthenticationProvider(delegate, cache, loginThrottle);
+
+    private Authentication login(String email, String password) {
+        return provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(email, password));
+    }
+
+    @Test
+    void repeatedCredentialsAreVerifiedOnce() {
+        Authentication first = login("1@example.com", "secret");
+        Authentication second = login("1@example.com", "secret");
+
+        assertEquals(1, verifications.get());
+        assertTrue(second.isAuthenticated());
+        assertEquals(first.getPrincipal(), second.getPrincipal());
+        assertNull(((SessionUser) second.getPrincipal()).getPassword());
+        assertEquals(1, meterRegistry.counter("auth.basic.cache", "result", "hit").count());
+    }
+
+    @Test
+    void wrongPasswordIsNeverServedFromCache() {
+        login("1@example.com", "secret");
+
+        assertThrows(BadCredentialsException.class, () -> login("1@example.com", "wrong"));
+        assertThrows(BadCredentialsException.class, () -> login("1@example.com", "wrong"));
+        assertEquals(3, verifications.get());
+    }
+
+    @Test
+    void invalidationForcesVerification() {
+        login("1@example.com", "secret");
+        login("2@example.com", "secret");
+
+        cache.invalidate(1L);
+        login("1@example.com", "secret");
+        login("2@example.com", "secret");
+
+        assertEquals(3, verifications.get());
+    }
+
+    @Test
+    void verificationRacingAnInvalidationIsNotCached() {
+        String key = cache.keyOf("1@example.com", "secret");
+        long generation = cache.generation();
+        cache.invalidate(1L);
+        cache.put(key, new SessionUser(1L, "1@example.com", null, List.of(), 0, true), generation);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void boundedLeastRecentlyUsedFirst() {
+        login("1@example.com", "secret");
+        login("2@example.com", "secret");
+        login("1@example.com", "secret");
+        login("3@example.com", "secret");
+
+        assertEquals(2, cache.size());
+        login("1@example.com", "secret");
+        login("2@example.com", "secret");
+        assertEquals(4, verifications.get());
+    }
+}
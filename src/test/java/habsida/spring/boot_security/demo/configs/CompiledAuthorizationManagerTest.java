@@ -0,0 +1,103 @@
+package habsida.spring.boot_security.demo.configs;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.List;
+
+import static habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager.Access.hasRole;
+import static habsida.spring.boot_security.demo.configs.CompiledAuthorizationManager.Access.permitAll;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledAuthorizationManagerTest {
+
+    private static final List<String> METHODS = List.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+    private static final List<String> PATHS = List.of(
+            "/", "/login", "/logout", "/admin", "/admin/", "/admin/update", "/admin/delete/7", "/administrator",
+            "/api/admin", "/api/admin/users", "/api/admin/users/7", "/api/admin/roles", "/api/adminx",
+            "/api/users", "/api/users/me", "/api", "/user", "/user/", "/users", "/user/profile/edit",
+            "/actuator", "/actuator/health", "/actuator/health/liveness", "/actuator/metrics/jvm.memory.used",
+            "/css/panel.css", "/js/admin.js", "/Admin");
+
+    @Test
+    void decidesLikeTheRequestMatcherChain() {
+        AuthorizationManager<HttpServletRequest> chain = matcherChain();
+        CompiledAuthorizationManager compiled = WebSecurityConfig.authorizationRules();
+        List<Authentication> callers = List.of(
+                new AnonymousAuthenticationToken("key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")),
+                new TestingAuthenticationToken("user@gmail.com", null, "ROLE_USER"),
+                new TestingAuthenticationToken("admin@gmail.com", null, "ROLE_ADMIN", "ROLE_USER"),
+                new TestingAuthenticationToken("auditor@gmail.com", null, "ROLE_AUDITOR"));
+
+        for (String method : METHODS) {
+            for (String path : PATHS) {
+                RequestAuthorizationContext context = context(method, path);
+                for (Authentication caller : callers) {
+                    assertEquals(chain.check(() -> caller, context.getRequest()).isGranted(),
+                            compiled.check(() -> caller, context).isGranted(),
+                            method + " " + path + " as " + caller.getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void firstMatchingRuleWinsAndPermitAllSkipsTheSecurityContext() {
+        CompiledAuthorizationManager manager = CompiledAuthorizationManager.builder()
+                .rule("/reports/{id}/public", permitAll())
+                .rule("/reports/**", hasRole("ADMIN"))
+                .rule("/reports/*/public", hasRole("NOBODY"))
+                .build(hasRole("USER"));
+        Authentication user = new TestingAuthenticationToken("user@gmail.com", null, "ROLE_USER");
+
+        assertTrue(manager.check(() -> fail("context loaded"), context("GET", "/reports/7/public")).isGranted());
+        assertFalse(manager.check(() -> user, context("GET", "/reports/7/private")).isGranted());
+        assertFalse(manager.check(() -> user, context("GET", "/reports")).isGranted());
+        assertTrue(manager.check(() -> user, context("GET", "/elsewhere")).isGranted());
+    }
+
+    @Test
+    void rejectsPatternsItCannotCompile() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledAuthorizationManager.builder().rule("/api/**/users", permitAll()).build(permitAll()));
+        assertThrows(IllegalArgumentException.class,
+                () -> CompiledAuthorizationManager.builder().rule("/api/user*", permitAll()).build(permitAll()));
+    }
+
+    // The rule table as it was declared with requestMatchers
+    static AuthorizationManager<HttpServletRequest> matcherChain() {
+        AuthorizationManager<RequestAuthorizationContext> admin = AuthorityAuthorizationManager.hasRole("ADMIN");
+        AuthorizationManager<RequestAuthorizationContext> user = AuthorityAuthorizationManager.hasAnyRole("USER", "ADMIN");
+        AuthorizationManager<RequestAuthorizationContext> permit = (authentication, context) -> new AuthorizationDecision(true);
+        return RequestMatcherDelegatingAuthorizationManager.builder()
+                .add(new AntPathRequestMatcher("/api/admin/**", "GET"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "POST"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "PUT"), admin)
+                .add(new AntPathRequestMatcher("/api/admin/**", "DELETE"), admin)
+                .add(new AntPathRequestMatcher("/admin/**"), admin)
+                .add(new AntPathRequestMatcher("/user/**"), user)
+                .add(new AntPathRequestMatcher("/api/users/**"), user)
+                .add(new AntPathRequestMatcher("/actuator/health/**"), permit)
+                .add(new AntPathRequestMatcher("/actuator/**"), admin)
+                .add(AnyRequestMatcher.INSTANCE, permit)
+                .build();
+    }
+
+    static RequestAuthorizationContext context(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return new RequestAuthorizationContext(request);
+    }
+}
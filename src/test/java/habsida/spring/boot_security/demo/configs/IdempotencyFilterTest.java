@@ -0,0 +1,138 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final IdempotencyFilter filter = new IdempotencyFilter(
+            new InMemoryIdempotencyStore(60_000, 100), 5_000, 1_000, new SimpleMeterRegistry());
+
+    @Test
+    void repeatIsReplayedAndDifferentBodyIsRejected() throws Exception {
+        FilterChain chain = (request, response) -> {
+            String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            response.setContentType("application/json");
+            ((HttpServletResponse) response).setHeader("Location", "/api/admin/users/" + (executions.get() + 1));
+            ((HttpServletResponse) response).addHeader("X-Total-Count", "1");
+            ((HttpServletResponse) response).addHeader("X-Total-Count", "2");
+            response.getWriter().write("{\"created\":" + executions.incrementAndGet() + ",\"echo\":" + body + "}");
+        };
+
+        MockHttpServletResponse first = send("k1", "{\"a\":1}", chain);
+        MockHttpServletResponse second = send("k1", "{\"a\":1}", chain);
+        assertEquals(1, executions.get());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("/api/admin/users/1", second.getHeader("Location"));
+        assertEquals(List.of("1", "2"), second.getHeaders("X-Total-Count"));
+
+        assertEquals(422, send("k1", "{\"a\":2}", chain).getStatus());
+        assertEquals(200, send("k2", "{\"a\":2}", chain).getStatus());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void serverErrorsReleaseTheKey() throws Exception {
+        FilterChain chain = (request, response) -> {
+            if (executions.incrementAndGet() == 1) {
+                ((HttpServletResponse) response).setStatus(503);
+            }
+        };
+        assertEquals(503, send("k", "{}", chain).getStatus());
+        assertEquals(200, send("k", "{}", chain).getStatus());
+        assertEquals(200, send("k", "{}", chain).getStatus());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheFirst() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain chain = (request, response) -> {
+            executions.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.getWriter().write("done");
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = pool.submit(() -> send("k", "{}", chain));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            Future<MockHttpServletResponse> second = pool.submit(() -> send("k", "{}", chain));
+            Thread.sleep(100);
+            assertFalse(second.isDone());
+            release.countDown();
+
+            assertEquals("done", first.get(5, TimeUnit.SECONDS).getContentAsString());
+            MockHttpServletResponse waited = second.get(5, TimeUnit.SECONDS);
+            assertEquals("done", waited.getContentAsString());
+            assertEquals("true", waited.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+            assertEquals(1, executions.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void bodyCanBeReadThroughAReadListener() throws Exception {
+        StringBuilder read = new StringBuilder();
+        FilterChain chain = (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    read.append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    read.append('|');
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+            });
+        };
+        assertEquals(200, send("k", "{\"a\":1}", chain).getStatus());
+        assertEquals("{\"a\":1}|", read.toString());
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/admin/users");
+        request.setServletPath("/api/admin/users");
+        request.addHeader(IdempotencyFilter.KEY_HEADER, key);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        request.setUserPrincipal(() -> "admin@gmail.com");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
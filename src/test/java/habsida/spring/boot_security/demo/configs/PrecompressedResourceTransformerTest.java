@@ -0,0 +1,37 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompressedResourceTransformerTest {
+
+    private final PrecompressedResourceTransformer transformer =
+            new PrecompressedResourceTransformer(CacheControl.noCache(), CacheControl.noCache());
+
+    @Test
+    void picksTheCodingTheClientWeightsHighest() {
+        // Brotli4j ships natives for the common platforms; without them only gzip is offered
+        String brotli = transformer.coding("br").equals("br") ? "br" : "gzip";
+
+        assertEquals(brotli, transformer.coding("gzip, deflate, br"));
+        assertEquals(brotli, transformer.coding("gzip;q=0.5, br;q=0.5"));
+        assertEquals("gzip", transformer.coding("gzip;q=0.8, br;q=0.5"));
+        assertEquals("gzip", transformer.coding("br;q=0, gzip"));
+        assertEquals("gzip", transformer.coding("BR ; Q=0.0 , GZip"));
+        assertEquals("identity", transformer.coding("br;q=0, gzip;q=0"));
+        assertEquals("identity", transformer.coding("deflate"));
+        assertEquals("identity", transformer.coding(null));
+        assertEquals("identity", transformer.coding("gzip;q=abc"));
+    }
+
+    @Test
+    void matchesWholeCodingNamesAndTheWildcard() {
+        assertEquals("identity", transformer.coding("brotli-ish, x-gzipped"));
+        assertEquals("gzip", transformer.coding("x-gzip"));
+        assertNotEquals("identity", transformer.coding("*"));
+        assertEquals("gzip", transformer.coding("*, br;q=0"));
+        assertEquals("identity", transformer.coding("*;q=0"));
+    }
+}
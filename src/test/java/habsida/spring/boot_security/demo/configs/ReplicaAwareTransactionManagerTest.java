@@ -0,0 +1,65 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The test context has a replica configured, so anonymous read-only transactions go to it
+@SpringBootTest
+class ReplicaAwareTransactionManagerTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void clearCaches() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAll();
+        sessionFactory.getCache().evictQueryRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void replicaReadsBypassTheSharedCaches() {
+        assertInstanceOf(ReplicaAwareTransactionManager.class, transactionManager);
+
+        assertTrue(find(true));
+        assertTrue(find(true));
+        assertEquals(0, statistics.getQueryCachePutCount());
+        assertEquals(0, statistics.getSecondLevelCachePutCount());
+
+        assertTrue(find(false));
+        assertEquals(1, statistics.getQueryCachePutCount());
+        assertTrue(statistics.getSecondLevelCachePutCount() > 0);
+
+        // Nor do they read what the primary cached, which may be newer than the replica
+        assertTrue(find(true));
+        assertEquals(0, statistics.getQueryCacheHitCount());
+        assertTrue(find(false));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    private boolean find(boolean readOnly) {
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        transactions.setReadOnly(readOnly);
+        return transactions.execute(status -> userRepository.findByEmail("admin@gmail.com").isPresent());
+    }
+}
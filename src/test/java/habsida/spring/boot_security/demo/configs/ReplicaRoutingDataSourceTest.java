@@ -0,0 +1,97 @@
+package habsida.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsRotateOverReplicas() {
+        Routing routing = new Routing(List.of(database("replica-a"), database("replica-b")));
+
+        assertEquals("primary", routing.read(false));
+        String first = routing.read(true);
+        String second = routing.read(true);
+        assertNotEquals(first, second);
+        assertTrue(List.of("replica-a", "replica-b").containsAll(List.of(first, second)));
+        assertEquals(first, routing.read(true));
+    }
+
+    @Test
+    void principalReadsOwnWritesFromPrimary() {
+        Routing routing = new Routing(List.of(database("replica-c")));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("admin@gmail.com", null));
+
+        assertEquals("replica-c", routing.read(true));
+        routing.write();
+        assertEquals("primary", routing.read(true));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user@gmail.com", null));
+        assertEquals("replica-c", routing.read(true));
+    }
+
+    @Test
+    void unreachableReplicaFailsOverToPrimary() {
+        JdbcDataSource missing = new JdbcDataSource();
+        missing.setURL("jdbc:h2:mem:missing-replica;IFEXISTS=TRUE");
+        Routing routing = new Routing(List.of(missing, database("replica-d")));
+
+        assertEquals("replica-d", routing.read(true));
+        assertEquals("replica-d", routing.read(true));
+
+        Routing primaryOnly = new Routing(List.of(missing));
+        assertEquals("primary", primaryOnly.read(true));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(32))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+    private static class Routing {
+
+        private final JdbcTemplate jdbc;
+        private final TransactionTemplate transactions;
+
+        Routing(List<DataSource> replicas) {
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(database("primary"), replicas,
+                    60_000, 60_000, new SimpleMeterRegistry());
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            this.jdbc = new JdbcTemplate(dataSource);
+            this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        }
+
+        String read(boolean readOnly) {
+            transactions.setReadOnly(readOnly);
+            return transactions.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+        }
+
+        void write() {
+            transactions.setReadOnly(false);
+            transactions.executeWithoutResult(status -> jdbc.update("UPDATE node SET name = name"));
+        }
+    }
+}
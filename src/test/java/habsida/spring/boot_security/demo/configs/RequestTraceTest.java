@@ -0,0 +1,79 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTraceTest {
+
+    @AfterEach
+    void stopTrace() {
+        RequestTrace.stop();
+    }
+
+    @Test
+    void countsOutermostCallsOnlyAndSpansWhenSampled() {
+        RequestTrace trace = RequestTrace.start(true);
+        long outer = RequestTrace.begin(RequestTrace.Phase.SERVICE);
+        long inner = RequestTrace.begin(RequestTrace.Phase.SERVICE);
+        RequestTrace.statement("select 1");
+        long sql = RequestTrace.begin(RequestTrace.Phase.SQL);
+        RequestTrace.end(RequestTrace.Phase.SQL, sql);
+        RequestTrace.end(RequestTrace.Phase.SERVICE, inner, () -> "inner");
+        RequestTrace.end(RequestTrace.Phase.SERVICE, outer, () -> "outer");
+
+        RequestTrace.Snapshot snapshot = trace.snapshot("GET", "/admin", 200);
+        assertEquals(1, snapshot.getPhases().get("service").getCount());
+        assertEquals(1, snapshot.getPhases().get("sql").getCount());
+        assertEquals(2, snapshot.getSpans().size());
+        assertEquals("select 1", snapshot.getSpans().get(0).getDetail());
+        assertEquals("outer", snapshot.getSpans().get(1).getDetail());
+
+        String header = trace.serverTiming();
+        assertTrue(header.startsWith("security;dur="), header);
+        assertTrue(header.contains("service;dur="), header);
+        assertTrue(header.contains("sql;dur=") && header.contains(";desc=\"1 call\""), header);
+        assertFalse(header.contains("render"), header);
+        assertTrue(header.matches(".*, total;dur=\\d+\\.\\d$"), header);
+    }
+
+    @Test
+    void withoutTraceNothingIsRecorded() {
+        long begun = RequestTrace.begin(RequestTrace.Phase.SQL);
+        assertEquals(0, begun);
+        RequestTrace.end(RequestTrace.Phase.SQL, begun, () -> fail("detail asked for without a trace"));
+
+        RequestTrace trace = RequestTrace.start(false);
+        RequestTrace.end(RequestTrace.Phase.SERVICE, RequestTrace.begin(RequestTrace.Phase.SERVICE),
+                () -> fail("detail asked for an unsampled trace"));
+        assertFalse(trace.isSampled());
+        assertTrue(trace.snapshot("GET", "/", 200).getSpans().isEmpty());
+    }
+
+    @Test
+    void debugHeaderForcesSamplingForAdminsOnly() throws Exception {
+        RequestTraceStore store = new RequestTraceStore(10);
+        RequestTraceFilter filter = new RequestTraceFilter(store, 0, false);
+        RequestTraceFilter.SecurityPassed securityPassed = new RequestTraceFilter.SecurityPassed();
+
+        MockHttpServletRequest anonymous = new MockHttpServletRequest("GET", "/admin");
+        anonymous.addHeader(RequestTraceFilter.DEBUG_HEADER, "1");
+        MockHttpServletResponse anonymousResponse = new MockHttpServletResponse();
+        filter.doFilter(anonymous, anonymousResponse,
+                (request, response) -> securityPassed.doFilter(request, response, (req, res) -> { }));
+        assertTrue(store.recent(10).isEmpty());
+        assertNull(anonymousResponse.getHeader(RequestTraceFilter.TRACE_ID_HEADER));
+
+        MockHttpServletRequest admin = new MockHttpServletRequest("GET", "/admin");
+        admin.addHeader(RequestTraceFilter.DEBUG_HEADER, "1");
+        admin.addUserRole("ADMIN");
+        MockHttpServletResponse adminResponse = new MockHttpServletResponse();
+        filter.doFilter(admin, adminResponse,
+                (request, response) -> securityPassed.doFilter(request, response, (req, res) -> { }));
+        assertEquals(1, store.recent(10).size());
+        assertEquals(store.recent(10).get(0).getId(), adminResponse.getHeader(RequestTraceFilter.TRACE_ID_HEADER));
+    }
+}
@@ -0,0 +1,54 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void refillsOneTokenPerPeriod() {
+        TokenBucket bucket = new TokenBucket(2, 0);
+        assertEquals(0, bucket.tryTake(0, 2, 1000));
+        assertEquals(0, bucket.tryTake(0, 2, 1000));
+        assertEquals(1000, bucket.tryTake(0, 2, 1000));
+        assertEquals(0, bucket.tryTake(1000, 2, 1000));
+        assertTrue(bucket.tryTake(1500, 2, 1000) > 0);
+    }
+
+    @Test
+    void backsOffExponentiallyAfterFreeFailures() {
+        TokenBucket bucket = new TokenBucket(100, 0);
+        bucket.recordFailure(0, 2, 1000, 10_000);
+        bucket.recordFailure(0, 2, 1000, 10_000);
+        assertEquals(0, bucket.tryTake(0, 100, 1000));
+
+        bucket.recordFailure(0, 2, 1000, 10_000);
+        assertEquals(1000, bucket.tryTake(0, 100, 1000));
+        bucket.recordFailure(0, 2, 1000, 10_000);
+        assertEquals(2000, bucket.tryTake(0, 100, 1000));
+        for (int i = 0; i < 10; i++) {
+            bucket.recordFailure(0, 2, 1000, 10_000);
+        }
+        assertEquals(10_000, bucket.tryTake(0, 100, 1000));
+
+        bucket.reset();
+        assertEquals(0, bucket.tryTake(0, 100, 1000));
+    }
+
+    @Test
+    void fullStripesFallBackToSharedOverflowBucket() {
+        TokenBucketTable table = new TokenBucketTable(1, 2, 5, 60_000);
+        TokenBucket first = table.bucket("a@x", 5, 0);
+        table.bucket("b@x", 5, 0);
+        TokenBucket overflowC = table.bucket("c@x", 5, 0);
+        TokenBucket overflowD = table.bucket("d@x", 5, 0);
+
+        assertSame(first, table.bucket("a@x", 5, 0));
+        assertSame(overflowC, overflowD);
+        assertEquals(2, table.size());
+
+        table.evictIdle(120_000);
+        assertEquals(0, table.size());
+    }
+}
@@ -0,0 +1,36 @@
+package habsida.spring.boot_security.demo.dto;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The datagen profile runs without a web server, on a database of its own
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:datagen;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.urls=jdbc:h2:mem:datagen;DB_CLOSE_DELAY=-1",
+        "app.credential-snapshot.file=target/test-datagen-credential-snapshot.bin",
+        "app.datagen.users=2500",
+        "app.datagen.mode=csv",
+        "app.datagen.chunk-size=1000",
+        "app.datagen.password-pool=2",
+        "app.datagen.exit=false"})
+@ActiveProfiles("datagen")
+@DirtiesContext
+class DataGeneratorTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void generatesUsersWithoutAWebServer() {
+        // Plus the admin and user seeded by DataInitializer
+        assertEquals(2502, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class));
+        assertEquals(2500, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE email NOT IN ('admin@gmail.com', 'user@gmail.com')", Long.class));
+    }
+}
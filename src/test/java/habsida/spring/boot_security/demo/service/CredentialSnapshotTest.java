@@ -0,0 +1,130 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.model.SessionUser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CredentialSnapshotTest {
+
+    private static final long ADMIN = 1;
+    private static final long USER = 2;
+
+    @TempDir
+    Path directory;
+
+    // Users 1..n: USER, every 10th also ADMIN, every 3rd inactive; bit 0 is ADMIN, bit 1 USER
+    private void write(Path file, int users, String password, long createdAt) throws IOException {
+        Map<Long, String> authorities = new LinkedHashMap<>();
+        authorities.put(ADMIN, "ROLE_ADMIN");
+        authorities.put(USER, "ROLE_USER");
+        Map<Long, Long> bits = new LinkedHashMap<>();
+        LongStream.rangeClosed(1, users).forEach(id -> bits.put(id, id % 10 == 0 ? 0b11L : 0b10L));
+        Stream<Object[]> rows = LongStream.rangeClosed(1, users).mapToObj(id -> new Object[]{
+                id, "user" + id + "@example.com", password, id % 3 != 0, LocalDateTime.of(2024, 1, 1, 0, 0)});
+        CredentialSnapshot.write(file, authorities, bits, rows, createdAt);
+    }
+
+    @Test
+    void findsEveryUserThroughTheMappedIndex() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        write(file, 5000, "{bcrypt}hash", 1_000L);
+        CredentialSnapshot.Mapped mapped = CredentialSnapshot.open(file);
+
+        assertEquals(5000, mapped.users());
+        assertEquals(1_000L, mapped.createdAt());
+        for (long id = 1; id <= 5000; id++) {
+            SessionUser user = mapped.find("user" + id + "@example.com");
+            assertNotNull(user, "user " + id);
+            assertEquals(id, user.getId());
+            assertEquals("{bcrypt}hash", user.getPassword());
+            assertEquals(id % 3 != 0, user.isEnabled());
+            assertEquals(id % 10 == 0 ? Set.of("ROLE_ADMIN", "ROLE_USER") : Set.of("ROLE_USER"),
+                    AuthorityUtils.authorityListToSet(user.getAuthorities()));
+        }
+        assertNull(mapped.find("nobody@example.com"));
+        assertNull(mapped.find("USER1@example.com"));
+    }
+
+    @Test
+    void refreshSwapsTheFileWhileOldMappingsStayReadable() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        write(file, 100, "old", 1_000L);
+        CredentialSnapshot.Mapped before = CredentialSnapshot.open(file);
+
+        write(file, 200, "new", 2_000L);
+        CredentialSnapshot.Mapped after = CredentialSnapshot.open(file);
+
+        assertEquals("old", before.find("user50@example.com").getPassword());
+        assertEquals("new", after.find("user50@example.com").getPassword());
+        assertNull(before.find("user150@example.com"));
+        assertNotNull(after.find("user150@example.com"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "no temporary files left behind");
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFilesAndReportsAge() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        write(file, 10, "hash", System.currentTimeMillis() - 30_000);
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = directory.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> CredentialSnapshot.open(truncated));
+
+        CredentialSnapshot snapshot = new CredentialSnapshot(null, null, null, new SimpleMeterRegistry(),
+                directory.resolve("missing.bin").toString());
+        assertTrue(Double.isNaN(snapshot.ageSeconds()));
+        assertTrue(snapshot.find("user1@example.com").isEmpty());
+        snapshot.replace(CredentialSnapshot.open(file));
+        assertEquals(30, snapshot.ageSeconds(), 5);
+        assertTrue(snapshot.find("user1@example.com").isPresent());
+    }
+
+    @Test
+    void failedRefreshKeepsThePreviousMapping() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        write(file, 10, "hash", 1_000L);
+        // The database is down, so no transaction can begin
+        PlatformTransactionManager unavailable = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                throw new CannotCreateTransactionException("Could not open JDBC connection");
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CredentialSnapshot snapshot = new CredentialSnapshot(null, null, unavailable, meterRegistry, file.toString());
+
+        assertDoesNotThrow(snapshot::refresh);
+        assertDoesNotThrow(snapshot::refresh);
+        assertEquals(2, meterRegistry.counter("auth.credential.snapshot.refresh.failures").count());
+        assertEquals("hash", snapshot.find("user5@example.com").orElseThrow().getPassword());
+    }
+}
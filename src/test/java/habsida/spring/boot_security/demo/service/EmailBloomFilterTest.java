@@ -0,0 +1,34 @@
+package habsida.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void neverMissesAnAddedEmailAndStaysNearItsFalsePositiveRate() {
+        EmailBloomFilter filter = new EmailBloomFilter(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+    }
+
+    @Test
+    void comparesNormalizedEmails() {
+        EmailBloomFilter filter = new EmailBloomFilter(100, 0.01);
+        filter.put(" Admin@Gmail.com");
+        assertTrue(filter.mightContain("admin@gmail.com "));
+        assertFalse(new EmailBloomFilter(100, 0.01).mightContain("admin@gmail.com"));
+    }
+}
@@ -0,0 +1,92 @@
+package habsida.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleMembershipIndexTest {
+
+    private static final long ADMIN = 1;
+    private static final long USER = 2;
+    private static final long AUDITOR = 3;
+
+    // Users 1..1000 are USER, every 10th also ADMIN, every 7th AUDITOR; even ids are active
+    private RoleMembershipIndex index() {
+        List<Object[]> memberships = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            memberships.add(new Object[]{id, USER});
+            if (id % 10 == 0) {
+                memberships.add(new Object[]{id, ADMIN});
+            }
+            if (id % 7 == 0) {
+                memberships.add(new Object[]{id, AUDITOR});
+            }
+        }
+        RoleMembershipIndex index = new RoleMembershipIndex(null, new SimpleMeterRegistry());
+        index.replace(RoleMembershipIndex.load(memberships.stream(),
+                LongStream.rangeClosed(1, 1000).filter(id -> id % 2 == 0).boxed()));
+        return index;
+    }
+
+    @Test
+    void combinesRolesAndActiveFlag() {
+        RoleMembershipIndex index = index();
+        assertEquals(100, index.members(ADMIN, List.of(), List.of(), List.of(), null, -1, 1000).total());
+        // ADMIN and AUDITOR: multiples of 70
+        assertArrayEquals(LongStream.rangeClosed(1, 14).map(i -> i * 70).toArray(),
+                index.members(ADMIN, List.of(), List.of(AUDITOR), List.of(), null, -1, 1000).userIds());
+        // ADMIN or AUDITOR, minus ADMIN: AUDITOR-only
+        assertEquals(142 - 14, index.members(ADMIN, List.of(AUDITOR), List.of(), List.of(ADMIN), null, -1, 1000).total());
+        // Inactive ADMINs: none, every multiple of 10 is even
+        assertEquals(0, index.members(ADMIN, List.of(), List.of(), List.of(), false, -1, 1000).total());
+        assertEquals(500, index.members(USER, List.of(), List.of(), List.of(), true, -1, 1000).total());
+        assertEquals(0, index.members(99, List.of(), List.of(), List.of(), null, -1, 1000).total());
+    }
+
+    @Test
+    void pagesWithCursorUntilExhausted() {
+        RoleMembershipIndex index = index();
+        List<Long> seen = new ArrayList<>();
+        long after = -1;
+        int pages = 0;
+        while (true) {
+            RoleMembershipIndex.Page page = index.members(USER, List.of(), List.of(), List.of(), null, after, 300);
+            pages++;
+            for (long id : page.userIds()) {
+                seen.add(id);
+            }
+            if (page.nextCursor() == null) {
+                break;
+            }
+            after = page.nextCursor();
+        }
+        assertEquals(4, pages);
+        assertEquals(LongStream.rangeClosed(1, 1000).boxed().toList(), seen);
+    }
+
+    @Test
+    void changesReplaceAUsersMembership() {
+        RoleMembershipIndex index = index();
+        index.apply(new RoleMembershipIndex.Change(5L, Set.of(ADMIN), true));
+        index.apply(new RoleMembershipIndex.Change(10L, null, false));
+        index.apply(new RoleMembershipIndex.Change(2000L, Set.of(AUDITOR), false));
+
+        assertArrayEquals(new long[]{5, 20, 30},
+                index.members(ADMIN, List.of(), List.of(), List.of(), null, -1, 3).userIds());
+        assertEquals(998, index.members(USER, List.of(), List.of(), List.of(), null, -1, 1000).total());
+        assertEquals(500, index.members(USER, List.of(ADMIN), List.of(), List.of(), true, -1, 1000).total());
+        assertArrayEquals(new long[]{2000},
+                index.members(AUDITOR, List.of(), List.of(), List.of(), false, 1000, 10).userIds());
+
+        // A stream of nothing clears the index
+        index.replace(RoleMembershipIndex.load(Stream.empty(), Stream.empty()));
+        assertEquals(0, index.members(ADMIN, List.of(), List.of(), List.of(), null, -1, 10).total());
+    }
+}
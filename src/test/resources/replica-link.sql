@@ -0,0 +1,3 @@
+CREATE LINKED TABLE IF NOT EXISTS roles('org.h2.Driver', 'jdbc:h2:mem:primary', 'sa', '', 'PUBLIC', 'ROLES') READONLY;
+CREATE LINKED TABLE IF NOT EXISTS users('org.h2.Driver', 'jdbc:h2:mem:primary', 'sa', '', 'PUBLIC', 'USERS') READONLY;
+CREATE LINKED TABLE IF NOT EXISTS users_roles('org.h2.Driver', 'jdbc:h2:mem:primary', 'sa', '', 'PUBLIC', 'USERS_ROLES') READONLY;